@@ -0,0 +1,73 @@
+// Mixed /auth/verifyToken + /auth/login load for comparing platform and virtual request threads.
+//
+// Start the service once with VIRTUAL_THREADS_ENABLED=false and once with VIRTUAL_THREADS_ENABLED=true (the same
+// DB_POOL_SIZE and PASSWORD_HASHING_* settings), then run for each of them:
+//
+//   k6 run -e BASE_URL=http://localhost:8080 --summary-export=target/load-<mode>.json load-test/mixed-auth.js
+//
+// and compare http_req_duration{endpoint:...} percentiles, http_reqs and the rate of 503 responses.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const USERS = 50;
+const PASSWORD = 'Password1!';
+
+export const options = {
+    scenarios: {
+        verify: {
+            executor: 'constant-arrival-rate',
+            exec: 'verify',
+            rate: Number(__ENV.VERIFY_RATE || 2000),
+            timeUnit: '1s',
+            duration: __ENV.DURATION || '2m',
+            preAllocatedVUs: 200,
+            maxVUs: 2000,
+        },
+        login: {
+            executor: 'constant-arrival-rate',
+            exec: 'login',
+            rate: Number(__ENV.LOGIN_RATE || 100),
+            timeUnit: '1s',
+            duration: __ENV.DURATION || '2m',
+            preAllocatedVUs: 50,
+            maxVUs: 1000,
+        },
+    },
+    thresholds: {
+        'http_req_duration{endpoint:verifyToken}': ['p(99)<50'],
+        'http_req_duration{endpoint:login}': ['p(99)<500'],
+    },
+};
+
+export function setup() {
+    const tokens = [];
+    const suffix = Date.now();
+    for (let i = 0; i < USERS; i++) {
+        const username = `load${suffix}_${i}`;
+        const response = http.post(`${BASE_URL}/auth/register`, JSON.stringify({
+            username: username,
+            password: PASSWORD,
+            email: `${username}@example.com`,
+        }), { headers: { 'Content-Type': 'application/json' } });
+        tokens.push({ username: username, accessToken: response.json('accessToken') });
+    }
+    return tokens;
+}
+
+export function verify(users) {
+    const user = users[Math.floor(Math.random() * users.length)];
+    const response = http.get(`${BASE_URL}/auth/verifyToken?accessToken=${user.accessToken}`,
+        { tags: { endpoint: 'verifyToken' } });
+    check(response, { 'verified': (r) => r.status === 200 });
+}
+
+export function login(users) {
+    const user = users[Math.floor(Math.random() * users.length)];
+    const response = http.post(`${BASE_URL}/auth/login`, JSON.stringify({
+        usernameOrEmail: user.username,
+        password: PASSWORD,
+    }), { headers: { 'Content-Type': 'application/json' }, tags: { endpoint: 'login' } });
+    check(response, { 'logged in or shed': (r) => r.status === 200 || r.status === 503 });
+}
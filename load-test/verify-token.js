@@ -0,0 +1,42 @@
+// Throughput of GET /auth/verifyToken on the fast path and on the MVC controller.
+//
+// Start the service pinned to one core (e.g. taskset -c 0 java -jar ...) once with VERIFY_TOKEN_FAST_PATH=true and
+// once with VERIFY_TOKEN_FAST_PATH=false, then run for each of them:
+//
+//   k6 run -e BASE_URL=http://localhost:8080 --summary-export=target/verify-<mode>.json load-test/verify-token.js
+//
+// and compare http_reqs rate. A tenth of the requests use a token with a wrong signature.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+    vus: Number(__ENV.VUS || 64),
+    duration: __ENV.DURATION || '1m',
+};
+
+export function setup() {
+    const username = `verify${Date.now()}`;
+    const response = http.post(`${BASE_URL}/auth/register`, JSON.stringify({
+        username: username,
+        password: 'Password1!',
+        email: `${username}@example.com`,
+    }), { headers: { 'Content-Type': 'application/json' } });
+    const accessToken = response.json('accessToken');
+    return {
+        validToken: accessToken,
+        invalidToken: accessToken.substring(0, accessToken.length - 2) + 'AA',
+    };
+}
+
+export default function (tokens) {
+    if (Math.random() < 0.1) {
+        const response = http.get(`${BASE_URL}/auth/verifyToken?accessToken=${tokens.invalidToken}`);
+        check(response, { 'rejected': (r) => r.status === 400 });
+    } else {
+        const response = http.get(`${BASE_URL}/auth/verifyToken?accessToken=${tokens.validToken}`);
+        check(response, { 'verified': (r) => r.status === 200 });
+    }
+}
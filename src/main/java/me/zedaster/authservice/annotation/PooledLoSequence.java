@@ -0,0 +1,24 @@
+package me.zedaster.authservice.annotation;
+
+import me.zedaster.authservice.entity.PooledLoSequenceGenerator;
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for IDs taken from a database sequence in blocks (see {@link PooledLoSequenceGenerator}).
+ * <br/>
+ * The size of the blocks is set by {@link PooledLoSequenceGenerator#ALLOCATION_SIZE_SETTING}.
+ */
+@IdGeneratorType(PooledLoSequenceGenerator.class)
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PooledLoSequence {
+    /**
+     * Name of the sequence.
+     */
+    String value();
+}
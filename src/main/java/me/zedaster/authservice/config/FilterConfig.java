@@ -0,0 +1,33 @@
+package me.zedaster.authservice.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.zedaster.authservice.filter.VerifyTokenFilter;
+import me.zedaster.authservice.service.JwtService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the servlet filters.
+ * <br/>
+ * The filters are registered here and not as components, so the web slices of the controller tests don't pick them up.
+ */
+@Configuration
+public class FilterConfig {
+    /**
+     * Registers the fast path of the access token verification. It can be switched off to compare it with the
+     * controller.
+     */
+    @Bean
+    @ConditionalOnProperty(value = "jwt.verify-token.fast-path", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<VerifyTokenFilter> verifyTokenFilter(JwtService jwtService,
+                                                                       ObjectMapper objectMapper)
+            throws JsonProcessingException {
+        FilterRegistrationBean<VerifyTokenFilter> registration =
+                new FilterRegistrationBean<>(new VerifyTokenFilter(jwtService, objectMapper));
+        registration.addUrlPatterns(VerifyTokenFilter.VERIFY_TOKEN_PATH);
+        return registration;
+    }
+}
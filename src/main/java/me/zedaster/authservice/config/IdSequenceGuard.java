@@ -0,0 +1,49 @@
+package me.zedaster.authservice.config;
+
+import me.zedaster.authservice.entity.PooledLoSequenceGenerator;
+import me.zedaster.authservice.entity.UserEntity;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refuses to start the application while the sequence of the former pooled optimizer exists.
+ * <br/><br/>
+ * The migration to {@link UserEntity#ID_SEQUENCE} drops that sequence. If it exists again, an instance of the previous
+ * release has created it (with ddl-auto: update) and is still giving IDs by the pooled optimizer, which overlap with
+ * the blocks of {@link PooledLoSequenceGenerator}. The check runs after the migrations and before the web server
+ * starts.
+ */
+@Component
+public class IdSequenceGuard implements SmartInitializingSingleton {
+    /**
+     * Name of the sequence of the former pooled optimizer.
+     */
+    public static final String POOLED_SEQUENCE = "users_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceGuard(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        check();
+    }
+
+    /**
+     * Checks that the sequence of the former pooled optimizer doesn't exist.
+     * @throws IllegalStateException If the sequence exists.
+     */
+    public void check() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.sequences WHERE LOWER(sequence_name) = ?",
+                Integer.class, POOLED_SEQUENCE);
+        if (count != null && count > 0) {
+            throw new IllegalStateException(("Sequence %s exists, so instances of the previous release still give " +
+                    "user IDs by the pooled optimizer. Stop them and drop the sequence before starting this release")
+                    .formatted(POOLED_SEQUENCE));
+        }
+    }
+}
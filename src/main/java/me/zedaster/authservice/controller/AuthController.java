@@ -1,20 +1,38 @@
 package me.zedaster.authservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import me.zedaster.authservice.dto.SuccessDto;
+import me.zedaster.authservice.dto.auth.AccessTokenClaimsDto;
+import me.zedaster.authservice.dto.auth.AccessTokenDto;
+import me.zedaster.authservice.dto.auth.AccessTokensDto;
 import me.zedaster.authservice.dto.auth.JwtPairDto;
 import me.zedaster.authservice.dto.auth.NewUserDto;
+import me.zedaster.authservice.dto.auth.TokenVerificationDto;
 import me.zedaster.authservice.dto.auth.UserCredentialsDto;
 import me.zedaster.authservice.exception.AuthException;
 import me.zedaster.authservice.exception.JwtException;
+import me.zedaster.authservice.model.TokenValidationResult;
 import me.zedaster.authservice.model.User;
+import me.zedaster.authservice.model.VerificationMode;
 import me.zedaster.authservice.service.JwtService;
 import me.zedaster.authservice.service.UserService;
+import me.zedaster.authservice.service.throttle.LoginThrottle;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Controller for handling authentication requests.
@@ -23,6 +41,10 @@ import java.util.Optional;
 @AllArgsConstructor
 @RequestMapping("/auth")
 public class AuthController {
+    /**
+     * Minimal number of tokens in a batch to verify them in parallel.
+     */
+    private static final int PARALLEL_VERIFICATION_THRESHOLD = 32;
 
     /**
      * Service for working with users.
@@ -34,6 +56,16 @@ public class AuthController {
      */
     private final JwtService jwtService;
 
+    /**
+     * Throttle of login attempts.
+     */
+    private final LoginThrottle loginThrottle;
+
+    /**
+     * Mapper for streaming JSON responses.
+     */
+    private final ObjectMapper objectMapper;
+
     /**
      * Register a new user.
      * @param registerDto DTO of the user to register.
@@ -45,12 +77,15 @@ public class AuthController {
     }
 
     /**
-     * Log in a user.
+     * Log in a user. The attempts are throttled by the account and by the IP before the password is checked.
      * @param userCredentialsDto Credentials of the user.
+     * @param request Request with the IP of the client. Behind the gateway it's the IP from X-Forwarded-For.
      * @return DTO of JWT access token and refresh token.
      */
     @PostMapping("/login")
-    public JwtPairDto login(@Valid @RequestBody UserCredentialsDto userCredentialsDto) throws AuthException {
+    public JwtPairDto login(@Valid @RequestBody UserCredentialsDto userCredentialsDto, HttpServletRequest request)
+            throws AuthException {
+        loginThrottle.acquire(userCredentialsDto.getUsernameOrEmail(), request.getRemoteAddr());
         Optional<User> user = userService.getUser(userCredentialsDto);
         if (user.isEmpty()) {
             throw AuthException.newInvalidCredentialsException();
@@ -60,13 +95,72 @@ public class AuthController {
 
     /**
      * Verify the JWT access token.
+     * <br/><br/>
+     * Depending on the mode the response contains:
+     * <ul>
+     *     <li>{@link VerificationMode#SUCCESS} - {@link SuccessDto} (default)</li>
+     *     <li>{@link VerificationMode#CLAIMS} - {@link AccessTokenClaimsDto}</li>
+     *     <li>{@link VerificationMode#HEADERS} - no body, the claims are in X-Auth-Sub, X-Auth-Username, X-Auth-Role
+     *     and X-Auth-Exp headers</li>
+     * </ul>
      * @param accessToken Access token
-     * @return DTO with the result of the verification.
+     * @param mode Format of the response.
+     * @return Response with the result of the verification.
      */
     @GetMapping("/verifyToken")
-    public ResponseEntity<SuccessDto> verifyToken(@RequestParam String accessToken) throws JwtException {
-        jwtService.validateAccessToken(accessToken);
-        return ResponseEntity.ok(new SuccessDto(true));
+    public ResponseEntity<?> verifyToken(@RequestParam String accessToken,
+                                         @RequestParam(defaultValue = "SUCCESS") VerificationMode mode)
+            throws JwtException {
+        if (mode == VerificationMode.SUCCESS) {
+            jwtService.validateAccessToken(accessToken);
+            return ResponseEntity.ok(new SuccessDto(true));
+        }
+
+        AccessTokenClaimsDto claims = jwtService.getAccessTokenClaims(accessToken);
+        if (mode == VerificationMode.CLAIMS) {
+            return ResponseEntity.ok(claims);
+        }
+        return ResponseEntity.noContent()
+                .header("X-Auth-Sub", claims.getSub())
+                .header("X-Auth-Username", claims.getUsername())
+                .header("X-Auth-Role", claims.getRole().name())
+                .header("X-Auth-Exp", String.valueOf(claims.getExp()))
+                .build();
+    }
+
+    /**
+     * Verify several JWT access tokens at once.
+     * <br/>
+     * Big batches are verified in parallel. The results are written to the response in the order of the tokens as
+     * soon as they are ready.
+     * @param accessTokensDto DTO with the access tokens.
+     * @param response Response to write the JSON array of {@link TokenVerificationDto} to.
+     */
+    @PostMapping("/verifyTokens")
+    public void verifyTokens(@Valid @RequestBody AccessTokensDto accessTokensDto, HttpServletResponse response)
+            throws IOException {
+        List<String> accessTokens = accessTokensDto.getAccessTokens();
+        Stream<String> tokenStream = accessTokens.size() >= PARALLEL_VERIFICATION_THRESHOLD
+                ? accessTokens.parallelStream()
+                : accessTokens.stream();
+
+        // The results are flushed only when the buffers are full, not after every token
+        ObjectWriter resultWriter = objectMapper.writerFor(TokenVerificationDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            tokenStream.map(this::verifyAccessToken).forEachOrdered(result -> {
+                try {
+                    resultWriter.writeValue(generator, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -78,4 +172,29 @@ public class AuthController {
     public JwtPairDto refreshToken(@RequestParam String refreshToken) throws JwtException {
         return jwtService.refreshToken(refreshToken);
     }
+
+    /**
+     * Revoke the JWT access token before its expiration, e.g. at logout. Other instances apply the revocation after
+     * they reload the revocations.
+     * @param accessTokenDto DTO with the access token.
+     * @return Success DTO.
+     */
+    @PostMapping("/revokeToken")
+    public SuccessDto revokeToken(@Valid @RequestBody AccessTokenDto accessTokenDto) throws JwtException {
+        jwtService.revokeAccessToken(accessTokenDto.getAccessToken());
+        return new SuccessDto(true);
+    }
+
+    /**
+     * Verify one JWT access token of a batch.
+     * @param accessToken Access token.
+     * @return Result of the verification.
+     */
+    private TokenVerificationDto verifyAccessToken(String accessToken) {
+        TokenValidationResult result = jwtService.checkAccessToken(accessToken);
+        if (!result.isValid()) {
+            return TokenVerificationDto.invalid();
+        }
+        return TokenVerificationDto.valid(result.getPayload());
+    }
 }
@@ -5,19 +5,26 @@ import me.zedaster.authservice.dto.ValidationErrorDto;
 import me.zedaster.authservice.dto.auth.UserCredentialsDto;
 import me.zedaster.authservice.exception.AuthException;
 import me.zedaster.authservice.exception.JwtException;
+import me.zedaster.authservice.exception.OverloadedException;
 import me.zedaster.authservice.exception.ProfileException;
+import me.zedaster.authservice.exception.TooManyAttemptsException;
 import me.zedaster.authservice.exception.UserIdException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Exception handlers for controllers.
+ * <br/><br/>
+ * The exceptions of the client errors handled here are expected results of requests, so they are created without
+ * stack traces.
  */
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -31,6 +38,30 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(new ErrorDto(exception.getMessage()), HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles exceptions thrown when the service is too busy.
+     * @param exception The instance of the exception.
+     * @return Json with error message and Retry-After header.
+     */
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<ErrorDto> handleOverloadedException(OverloadedException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ErrorDto(exception.getMessage()));
+    }
+
+    /**
+     * Handles exceptions thrown when the client makes too many attempts.
+     * @param exception The instance of the exception.
+     * @return Json with error message and Retry-After header.
+     */
+    @ExceptionHandler(TooManyAttemptsException.class)
+    public ResponseEntity<ErrorDto> handleTooManyAttemptsException(TooManyAttemptsException exception) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ErrorDto(exception.getMessage()));
+    }
+
     /**
      * Handles validation exceptions.
      * @param e The instance of the exception.
@@ -50,4 +81,19 @@ public class GlobalExceptionHandler {
         ValidationErrorDto errorDto = new ValidationErrorDto(errorsByField);
         return new ResponseEntity<>(errorDto, HttpStatus.BAD_REQUEST);
     }
+
+    /**
+     * Handles validation exceptions of the request parameters.
+     * @param e The instance of the exception.
+     * @return Json with error messages by the parameters.
+     */
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<ErrorDto> handleMethodValidationException(HandlerMethodValidationException e) {
+        Map<String, String> errorsByParameter = new HashMap<>();
+        e.getAllValidationResults().forEach(result -> result.getResolvableErrors().forEach(error ->
+                errorsByParameter.put(result.getMethodParameter().getParameterName(), error.getDefaultMessage())
+        ));
+        ValidationErrorDto errorDto = new ValidationErrorDto(errorsByParameter);
+        return new ResponseEntity<>(errorDto, HttpStatus.BAD_REQUEST);
+    }
 }
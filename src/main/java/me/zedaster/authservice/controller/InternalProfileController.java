@@ -1,10 +1,22 @@
 package me.zedaster.authservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
+import me.zedaster.authservice.dto.profile.UserIdsDto;
+import me.zedaster.authservice.dto.profile.UsernamesDto;
 import me.zedaster.authservice.service.UserService;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Profile REST controller for methods for internal use
@@ -18,6 +30,11 @@ public class InternalProfileController {
      */
     private final UserService userService;
 
+    /**
+     * Object mapper for streaming the usernames.
+     */
+    private final ObjectMapper objectMapper;
+
     /**
      * Returns username by user ID.
      * @param userId User ID.
@@ -34,7 +51,60 @@ public class InternalProfileController {
      * @return List of JSON objects with username.
      */
     @GetMapping("/usernames")
-    public List<String> getUsernamesByIds(@RequestParam("ids") List<Long> userIds) {
+    public List<String> getUsernamesByIds(
+            @RequestParam("ids") List<@NotNull(message = "User IDs must be not null!") Long> userIds) {
         return userService.getUsernames(userIds);
     }
+
+    /**
+     * Resolves usernames by user IDs. Unlike {@link #getUsernamesByIds(List)}, duplicate IDs are allowed and users that
+     * are not found are reported in the response instead of failing the request.
+     * @param userIds List of user IDs.
+     * @return JSON object with usernames by user IDs and IDs of missing users.
+     */
+    @GetMapping("/usernames/resolve")
+    public UsernamesDto resolveUsernamesByIds(
+            @RequestParam("ids") List<@NotNull(message = "User IDs must be not null!") Long> userIds) {
+        return userService.resolveUsernames(userIds);
+    }
+
+    /**
+     * Resolves usernames of many users. The IDs are passed in the body, so they are not limited by the URL length.
+     * <br/>
+     * The users are looked up in fixed-size chunks, and the usernames of every chunk are written to the response as
+     * soon as they are loaded.
+     * @param userIdsDto DTO with the user IDs.
+     * @param response Response to write the JSON object in the format of {@link UsernamesDto} to.
+     */
+    @PostMapping("/usernames")
+    public void resolveManyUsernames(@Valid @RequestBody UserIdsDto userIdsDto, HttpServletResponse response)
+            throws IOException {
+        List<Long> missingIds = new ArrayList<>();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("usernames");
+            userService.resolveUsernamesInChunks(userIdsDto.getIds(), chunk -> {
+                try {
+                    for (Map.Entry<Long, String> entry : chunk.getUsernames().entrySet()) {
+                        generator.writeStringField(entry.getKey().toString(), entry.getValue());
+                    }
+                    // Every chunk is sent as soon as it's ready
+                    generator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                missingIds.addAll(chunk.getMissingIds());
+            });
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("missingIds");
+            for (long missingId : missingIds) {
+                generator.writeNumber(missingId);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package me.zedaster.authservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import me.zedaster.authservice.dto.migration.ImportReportDto;
+import me.zedaster.authservice.dto.migration.ImportedUserDto;
+import me.zedaster.authservice.service.migration.UserImportService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST controller for importing users from another system (for internal use)
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/internal/users")
+public class InternalUserImportController {
+    /**
+     * Service for importing users.
+     */
+    private final UserImportService userImportService;
+
+    /**
+     * Imports users with already hashed passwords. The body is read while the users are written, so its size is not
+     * limited.
+     * @param request Request with the UTF-8 NDJSON body: one JSON object in the format of {@link ImportedUserDto} per
+     *                line.
+     * @return Report of the import with the lines that are not imported.
+     */
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ImportReportDto importUsers(HttpServletRequest request) throws IOException {
+        try (Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            return userImportService.importUsers(reader);
+        }
+    }
+}
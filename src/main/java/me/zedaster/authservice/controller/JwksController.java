@@ -0,0 +1,48 @@
+package me.zedaster.authservice.controller;
+
+import me.zedaster.authservice.service.key.JwksDocument;
+import me.zedaster.authservice.service.key.JwtKeyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * REST controller that publishes the public keys for verifying the access tokens, so other services can verify them
+ * without calling this service.
+ */
+@RestController
+public class JwksController {
+    /**
+     * Store of the signing keys.
+     */
+    private final JwtKeyStore keyStore;
+
+    /**
+     * Time during which the clients can cache the keys.
+     */
+    private final CacheControl cacheControl;
+
+    public JwksController(JwtKeyStore keyStore, @Value("${jwt.jwks.max-age}") Duration maxAge) {
+        this.keyStore = keyStore;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    /**
+     * Returns the JSON Web Key Set. If the keys are not changed since the ETag from If-None-Match, the response is 304.
+     * @return JSON with the public keys. It's empty if the tokens are signed with HMAC.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<byte[]> getJwks() {
+        JwksDocument jwks = keyStore.getJwks();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(jwks.getEtag())
+                .cacheControl(cacheControl)
+                .body(jwks.getJson());
+    }
+}
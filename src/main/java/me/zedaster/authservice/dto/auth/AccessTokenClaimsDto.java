@@ -0,0 +1,35 @@
+package me.zedaster.authservice.dto.auth;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import me.zedaster.authservice.model.Role;
+
+/**
+ * DTO with the claims of a verified JWT access token.
+ * <br/>
+ * It has the same fields as the token payload that is forwarded to the protected endpoints, so the gateway doesn't
+ * need to decode the token again.
+ */
+@Data
+@AllArgsConstructor
+public class AccessTokenClaimsDto {
+    /**
+     * ID of the user.
+     */
+    private final String sub;
+
+    /**
+     * Username of the user.
+     */
+    private final String username;
+
+    /**
+     * Role of the user.
+     */
+    private final Role role;
+
+    /**
+     * Expiration time of the token in seconds since the epoch.
+     */
+    private final long exp;
+}
@@ -1,5 +1,6 @@
 package me.zedaster.authservice.dto.auth;
 
+import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,5 +15,6 @@ public class AccessTokenDto {
     /**
      * JWT access token.
      */
+    @NotNull(message = "Access token must be not null!")
     private String accessToken;
 }
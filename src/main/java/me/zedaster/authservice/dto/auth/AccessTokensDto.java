@@ -0,0 +1,24 @@
+package me.zedaster.authservice.dto.auth;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO of several JWT access tokens to verify at once.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccessTokensDto {
+    /**
+     * JWT access tokens. No more than 1000 tokens can be verified at once.
+     */
+    @NotNull(message = "Access tokens must be not null!")
+    @Size(max = 1000, message = "No more than 1000 tokens can be verified at once!")
+    private List<String> accessTokens;
+}
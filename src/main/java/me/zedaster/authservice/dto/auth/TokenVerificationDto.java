@@ -0,0 +1,51 @@
+package me.zedaster.authservice.dto.auth;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import me.zedaster.authservice.dto.TokenPayload;
+import me.zedaster.authservice.model.Role;
+
+/**
+ * DTO with the result of the verification of one JWT access token.
+ * <br/>
+ * The claims are present only if the token is valid.
+ */
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenVerificationDto {
+    /**
+     * Result of the verification of an invalid token.
+     */
+    private static final TokenVerificationDto INVALID = new TokenVerificationDto(false, null, null, null);
+
+    /**
+     * Whether the token is valid.
+     */
+    private final boolean valid;
+
+    /**
+     * ID of the user.
+     */
+    private final String sub;
+
+    /**
+     * Username of the user.
+     */
+    private final String username;
+
+    /**
+     * Role of the user.
+     */
+    private final Role role;
+
+    public static TokenVerificationDto valid(TokenPayload payload) {
+        return new TokenVerificationDto(true, String.valueOf(payload.getUserId()), payload.getUsername(),
+                payload.getRole());
+    }
+
+    public static TokenVerificationDto invalid() {
+        return INVALID;
+    }
+}
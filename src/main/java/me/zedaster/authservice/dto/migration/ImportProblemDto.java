@@ -0,0 +1,27 @@
+package me.zedaster.authservice.dto.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import me.zedaster.authservice.model.ImportProblemType;
+
+/**
+ * DTO of a line of the import file that is not imported.
+ */
+@Data
+@AllArgsConstructor
+public class ImportProblemDto {
+    /**
+     * Number of the line (starting from 1).
+     */
+    private long line;
+
+    /**
+     * Why the line is not imported.
+     */
+    private ImportProblemType type;
+
+    /**
+     * Description of the problem.
+     */
+    private String message;
+}
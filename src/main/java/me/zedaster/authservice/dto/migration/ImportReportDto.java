@@ -0,0 +1,33 @@
+package me.zedaster.authservice.dto.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO with the result of an import of users.
+ */
+@Data
+@AllArgsConstructor
+public class ImportReportDto {
+    /**
+     * Number of imported users.
+     */
+    private long imported;
+
+    /**
+     * Number of lines with a username or email that is already taken (in the database or by a previous line).
+     */
+    private long duplicates;
+
+    /**
+     * Number of lines that are not valid.
+     */
+    private long invalid;
+
+    /**
+     * Lines that are not imported, in the order of the file. Only the first ones are listed if there are too many.
+     */
+    private List<ImportProblemDto> problems;
+}
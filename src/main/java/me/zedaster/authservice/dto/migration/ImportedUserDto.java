@@ -0,0 +1,47 @@
+package me.zedaster.authservice.dto.migration;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.zedaster.authservice.annotation.Nickname;
+import me.zedaster.authservice.model.Role;
+
+/**
+ * DTO of a user imported from another system (one line of the import file).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportedUserDto {
+    /**
+     * Username of the user. It has the same requirements as at the registration.
+     */
+    @NotNull(message = "Username must be not null!")
+    @Nickname
+    private String username;
+
+    /**
+     * BCrypt hash of the password. Hashes with a lower cost than the current one are upgraded at the next login.
+     */
+    @NotNull(message = "Password must be not null!")
+    @Pattern(regexp = "\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}", message = "Password must be a BCrypt hash!")
+    private String password;
+
+    /**
+     * Email of the user
+     * <br/><br/>
+     * Must contain a correct email address
+     */
+    @NotEmpty(message = "The email must not be empty!")
+    @Email(message = "The email is incorrect!")
+    private String email;
+
+    /**
+     * Role of the user. {@link Role#USER} if it's not set.
+     */
+    private Role role;
+}
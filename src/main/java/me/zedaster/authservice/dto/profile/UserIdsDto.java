@@ -0,0 +1,24 @@
+package me.zedaster.authservice.dto.profile;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO of user IDs to look up at once.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserIdsDto {
+    /**
+     * IDs of the users. No more than 100000 users can be looked up at once.
+     */
+    @NotNull(message = "User IDs must be not null!")
+    @Size(max = 100000, message = "No more than 100000 users can be looked up at once!")
+    private List<@NotNull(message = "User IDs must be not null!") Long> ids;
+}
@@ -0,0 +1,24 @@
+package me.zedaster.authservice.dto.profile;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO with usernames resolved by user IDs. Users that are not found don't fail the whole batch.
+ */
+@Data
+@AllArgsConstructor
+public class UsernamesDto {
+    /**
+     * Usernames by user IDs in the order of the requested IDs. Every ID is present only once.
+     */
+    private Map<Long, String> usernames;
+
+    /**
+     * Requested IDs of users that don't exist, in the order of the requested IDs.
+     */
+    private List<Long> missingIds;
+}
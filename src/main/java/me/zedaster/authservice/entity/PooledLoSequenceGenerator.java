@@ -0,0 +1,60 @@
+package me.zedaster.authservice.entity;
+
+import me.zedaster.authservice.annotation.PooledLoSequence;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator that reserves blocks of IDs with the pooled-lo optimizer.
+ * <br/><br/>
+ * Every value of the sequence is the first ID of a block, so one call of the sequence gives IDs for
+ * {@link #ALLOCATION_SIZE_SETTING} inserts, and IDs are known before the inserts, so they can be sent in JDBC batches.
+ * The increment of the sequence in the database must be equal to the allocation size (Hibernate checks it on startup).
+ * <br/><br/>
+ * The former pooled optimizer used every value of users_seq as the last ID of a block instead, and instances with the
+ * two optimizers give overlapping blocks from one sequence. So the IDs are taken from a new sequence that the migration
+ * starts after every block of users_seq and drops users_seq. Old instances of a rolling deploy fail to take new blocks
+ * instead of giving overlapping IDs, and {@link me.zedaster.authservice.config.IdSequenceGuard} refuses to start while
+ * users_seq exists again.
+ * <br/><br/>
+ * A change of the allocation size is not protected: all instances must be stopped before the first one with the new
+ * size is started.
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+    /**
+     * Hibernate property with the number of IDs reserved by one call of the sequence.
+     */
+    public static final String ALLOCATION_SIZE_SETTING = "auth.id.allocation_size";
+
+    /**
+     * Allocation size if the property is not set.
+     */
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    private final String sequenceName;
+
+    public PooledLoSequenceGenerator(PooledLoSequence config) {
+        this.sequenceName = config.value();
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = serviceRegistry.requireService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE_SETTING, StandardConverters.INTEGER, DEFAULT_ALLOCATION_SIZE);
+        if (allocationSize < 1) {
+            throw new MappingException("Allocation size of sequence '%s' must be positive".formatted(sequenceName));
+        }
+
+        parameters.setProperty(SEQUENCE_PARAM, sequenceName);
+        parameters.setProperty(INCREMENT_PARAM, Integer.toString(allocationSize));
+        parameters.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+package me.zedaster.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Issued refresh token that has not been used yet (stored in the database).
+ * <br/>
+ * Only the IDs are stored, not the tokens themselves. A refresh consumes the row by its primary key.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "refresh_tokens_family_id_idx", columnList = "family_id"),
+        @Index(name = "refresh_tokens_user_id_idx", columnList = "user_id"),
+        @Index(name = "refresh_tokens_expires_at_idx", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshTokenEntity implements Persistable<UUID> {
+    /**
+     * ID of the token (its "jti" claim).
+     */
+    @Id
+    private UUID id;
+
+    /**
+     * ID of the user the token is issued for.
+     */
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+
+    /**
+     * ID of the family of tokens. The tokens that replace each other by refreshes share the family.
+     */
+    @Column(name = "family_id", nullable = false)
+    private UUID familyId;
+
+    /**
+     * Expiration time of the token.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Tokens are only inserted and deleted, so saving never has to check if the row exists.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
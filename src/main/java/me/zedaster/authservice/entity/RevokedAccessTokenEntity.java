@@ -0,0 +1,51 @@
+package me.zedaster.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Access token revoked before its expiration (stored in the database).
+ */
+@Entity
+@Table(name = "revoked_access_tokens", indexes = {
+        @Index(name = "revoked_access_tokens_expires_at_idx", columnList = "expires_at"),
+        @Index(name = "revoked_access_tokens_revoked_at_idx", columnList = "revoked_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevokedAccessTokenEntity implements Persistable<UUID> {
+    /**
+     * ID of the token (its "jti" claim).
+     */
+    @Id
+    private UUID id;
+
+    /**
+     * Expiration time of the token. The revocation is not needed after it.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Time of the revocation. Instances load the revocations made since their last sync by it.
+     */
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    /**
+     * Revocations are only inserted and deleted, so saving never has to check if the row exists.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
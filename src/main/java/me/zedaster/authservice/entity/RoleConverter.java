@@ -6,11 +6,12 @@ import me.zedaster.authservice.model.Role;
 public class RoleConverter implements AttributeConverter<Role, Integer>  {
     @Override
     public Integer convertToDatabaseColumn(Role role) {
-        return role.getId();
+        return role == null ? null : role.getId();
     }
 
     @Override
     public Role convertToEntityAttribute(Integer roleId) {
-        return Role.getById(roleId);
+        // The role is null when it is selected through an outer join and the user has the default role
+        return roleId == null ? null : Role.getById(roleId);
     }
 }
@@ -0,0 +1,47 @@
+package me.zedaster.authservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Refresh token issued before the rotation of refresh tokens that has already been exchanged (stored in the database).
+ * <br/>
+ * Such tokens have no ID, so the row is keyed by a UUID derived from the token itself. The table is not needed after
+ * all these tokens are expired.
+ */
+@Entity
+@Table(name = "used_legacy_refresh_tokens", indexes = {
+        @Index(name = "used_legacy_refresh_tokens_expires_at_idx", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UsedLegacyRefreshTokenEntity implements Persistable<UUID> {
+    /**
+     * UUID derived from the token.
+     */
+    @Id
+    private UUID id;
+
+    /**
+     * Expiration time of the token. The row is not needed after it.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Rows are only inserted, so a second insert of the same token fails on the primary key.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
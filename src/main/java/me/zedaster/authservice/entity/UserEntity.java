@@ -5,28 +5,48 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import me.zedaster.authservice.annotation.PooledLoSequence;
 
 /**
  * User entity (stored in the database).
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = UserEntity.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = UserEntity.EMAIL_CONSTRAINT, columnNames = "email")
+})
 // Postgres automatically creates B-tree indexes for unique fields (for username and email in the case)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class UserEntity {
+    /**
+     * Name of the unique constraint on the username.
+     */
+    public static final String USERNAME_CONSTRAINT = "users_username_key";
+
+    /**
+     * Name of the unique constraint on the email.
+     */
+    public static final String EMAIL_CONSTRAINT = "users_email_key";
+
+    /**
+     * Name of the sequence the IDs are taken from.
+     */
+    public static final String ID_SEQUENCE = "users_id_seq";
+
+    /**
+     * ID of the user. It's assigned on persist from a block of the sequence, before the insert.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @PooledLoSequence(ID_SEQUENCE)
     private Long id;
 
-    @Column(unique=true)
     private String username;
 
     private String password;
 
-    @Column(unique=true)
     private String email;
 
     @OneToOne(mappedBy = "user", fetch = FetchType.EAGER, orphanRemoval = true, cascade = CascadeType.REMOVE)
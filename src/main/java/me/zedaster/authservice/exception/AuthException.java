@@ -5,7 +5,7 @@ package me.zedaster.authservice.exception;
  */
 public class AuthException extends Exception {
     public AuthException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public static AuthException newInvalidCredentialsException() {
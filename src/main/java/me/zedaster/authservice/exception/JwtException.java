@@ -5,6 +5,6 @@ package me.zedaster.authservice.exception;
  */
 public class JwtException extends Exception {
     public JwtException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
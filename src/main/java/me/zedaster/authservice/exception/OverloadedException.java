@@ -0,0 +1,19 @@
+package me.zedaster.authservice.exception;
+
+import lombok.Getter;
+
+/**
+ * Runtime exception thrown when the service is too busy to handle the request right now.
+ */
+@Getter
+public class OverloadedException extends RuntimeException {
+    /**
+     * Number of seconds after which the client can retry the request.
+     */
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
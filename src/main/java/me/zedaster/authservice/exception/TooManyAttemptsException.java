@@ -0,0 +1,19 @@
+package me.zedaster.authservice.exception;
+
+import lombok.Getter;
+
+/**
+ * Runtime exception thrown when a client makes too many attempts in a short time.
+ */
+@Getter
+public class TooManyAttemptsException extends RuntimeException {
+    /**
+     * Number of seconds after which the client can retry the request.
+     */
+    private final long retryAfterSeconds;
+
+    public TooManyAttemptsException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -19,4 +19,12 @@ public class UserIdException extends IllegalArgumentException {
     public static UserIdException newManyNotFoundException() {
         return new UserIdException("Some users not found!");
     }
+
+    /**
+     * {@link IllegalArgumentException} has no constructor that disables the stack trace.
+     */
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
 }
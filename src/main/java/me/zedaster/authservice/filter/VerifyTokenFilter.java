@@ -0,0 +1,76 @@
+package me.zedaster.authservice.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import me.zedaster.authservice.dto.ErrorDto;
+import me.zedaster.authservice.dto.SuccessDto;
+import me.zedaster.authservice.model.VerificationMode;
+import me.zedaster.authservice.service.JwtService;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import java.io.IOException;
+
+/**
+ * Fast path of {@code GET /auth/verifyToken} in the default {@link VerificationMode#SUCCESS} mode.
+ * <br/><br/>
+ * The verification doesn't need the database, so the request is answered here without the dispatcher servlet,
+ * parameter binding, serialization of the response and the exception handler. The response bodies are the same as
+ * the ones of the controller, but they are serialized only once. Requests in other modes or without the token are
+ * passed to the controller.
+ */
+public class VerifyTokenFilter extends HttpFilter {
+    /**
+     * Path of the requests handled by the filter.
+     */
+    public static final String VERIFY_TOKEN_PATH = "/auth/verifyToken";
+
+    /**
+     * Service for operations with JWT.
+     */
+    private final JwtService jwtService;
+
+    /**
+     * Serialized {@link SuccessDto} of a valid token.
+     */
+    private final byte[] validBody;
+
+    /**
+     * Serialized {@link ErrorDto} of an invalid token.
+     */
+    private final byte[] invalidBody;
+
+    public VerifyTokenFilter(JwtService jwtService, ObjectMapper objectMapper) throws JsonProcessingException {
+        this.jwtService = jwtService;
+        this.validBody = objectMapper.writeValueAsBytes(new SuccessDto(true));
+        this.invalidBody = objectMapper.writeValueAsBytes(new ErrorDto("The access token is invalid!"));
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String accessToken = request.getParameter("accessToken");
+        String mode = request.getParameter("mode");
+        if (!HttpMethod.GET.matches(request.getMethod()) || accessToken == null
+                || (mode != null && !mode.equals(VerificationMode.SUCCESS.name()))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // The handler mapping is skipped, so the URI of the HTTP metrics is set here
+        ServerHttpObservationFilter.findObservationContext(request)
+                .ifPresent(context -> context.setPathPattern(VERIFY_TOKEN_PATH));
+        boolean valid = jwtService.isAccessTokenValid(accessToken);
+        byte[] body = valid ? validBody : invalidBody;
+        response.setStatus(valid ? HttpServletResponse.SC_OK : HttpServletResponse.SC_BAD_REQUEST);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
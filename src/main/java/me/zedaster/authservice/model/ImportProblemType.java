@@ -0,0 +1,16 @@
+package me.zedaster.authservice.model;
+
+/**
+ * Reason why a line of the import file is not imported.
+ */
+public enum ImportProblemType {
+    /**
+     * The line is not valid JSON or the user doesn't meet the requirements.
+     */
+    INVALID,
+
+    /**
+     * The username or the email is already taken.
+     */
+    DUPLICATE
+}
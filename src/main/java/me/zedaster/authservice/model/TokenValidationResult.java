@@ -0,0 +1,100 @@
+package me.zedaster.authservice.model;
+
+import lombok.Getter;
+import me.zedaster.authservice.dto.TokenPayload;
+
+/**
+ * Result of the validation of a JWT token. Invalid tokens are reported by the status instead of an exception.
+ */
+@Getter
+public class TokenValidationResult {
+    private static final TokenValidationResult EXPIRED = new TokenValidationResult(Status.EXPIRED, null, 0, null);
+
+    private static final TokenValidationResult REVOKED = new TokenValidationResult(Status.REVOKED, null, 0, null);
+
+    private static final TokenValidationResult BAD_SIGNATURE =
+            new TokenValidationResult(Status.BAD_SIGNATURE, null, 0, null);
+
+    private static final TokenValidationResult MALFORMED = new TokenValidationResult(Status.MALFORMED, null, 0, null);
+
+    /**
+     * Status of the token.
+     */
+    private final Status status;
+
+    /**
+     * Payload of the token. It is null if the token is invalid.
+     */
+    private final TokenPayload payload;
+
+    /**
+     * Expiration time of the token in milliseconds since the epoch. It is 0 if the token is invalid.
+     */
+    private final long expiration;
+
+    /**
+     * ID of the token ("jti" claim). It is null if the token is invalid or it has no ID.
+     */
+    private final String tokenId;
+
+    private TokenValidationResult(Status status, TokenPayload payload, long expiration, String tokenId) {
+        this.status = status;
+        this.payload = payload;
+        this.expiration = expiration;
+        this.tokenId = tokenId;
+    }
+
+    public static TokenValidationResult valid(TokenPayload payload, long expiration, String tokenId) {
+        return new TokenValidationResult(Status.VALID, payload, expiration, tokenId);
+    }
+
+    public static TokenValidationResult expired() {
+        return EXPIRED;
+    }
+
+    public static TokenValidationResult revoked() {
+        return REVOKED;
+    }
+
+    public static TokenValidationResult badSignature() {
+        return BAD_SIGNATURE;
+    }
+
+    public static TokenValidationResult malformed() {
+        return MALFORMED;
+    }
+
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    /**
+     * Status of the validated token.
+     */
+    public enum Status {
+        /**
+         * The token is valid.
+         */
+        VALID,
+
+        /**
+         * The token is signed correctly but it is expired.
+         */
+        EXPIRED,
+
+        /**
+         * The token is signed correctly and not expired, but it was revoked.
+         */
+        REVOKED,
+
+        /**
+         * The signature of the token is wrong, e.g. it was signed by another key.
+         */
+        BAD_SIGNATURE,
+
+        /**
+         * The token can't be parsed or it doesn't contain the required claims.
+         */
+        MALFORMED
+    }
+}
@@ -0,0 +1,21 @@
+package me.zedaster.authservice.model;
+
+/**
+ * Format of the response of the access token verification.
+ */
+public enum VerificationMode {
+    /**
+     * JSON object that only says whether the token is valid.
+     */
+    SUCCESS,
+
+    /**
+     * JSON object with the claims of the token.
+     */
+    CLAIMS,
+
+    /**
+     * Empty response with the claims of the token in the X-Auth-* headers.
+     */
+    HEADERS
+}
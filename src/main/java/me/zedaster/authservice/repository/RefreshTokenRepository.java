@@ -0,0 +1,61 @@
+package me.zedaster.authservice.repository;
+
+import me.zedaster.authservice.entity.RefreshTokenEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Repository for storing unused refresh tokens in the database.
+ * <br/>
+ * All deletions are single statements. Derived delete methods would load the rows and delete them one by one.
+ */
+@Repository
+public interface RefreshTokenRepository extends CrudRepository<RefreshTokenEntity, UUID> {
+    /**
+     * Deletes the token by its ID.
+     * @param id ID of the token.
+     * @return Number of deleted tokens (0 or 1).
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshTokenEntity t WHERE t.id = :id")
+    int deleteTokenById(UUID id);
+
+    /**
+     * Deletes all tokens of the family.
+     * @param familyId ID of the family.
+     * @return Number of deleted tokens.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshTokenEntity t WHERE t.familyId = :familyId")
+    int deleteAllByFamilyId(UUID familyId);
+
+    /**
+     * Deletes all tokens of the user.
+     * @param userId ID of the user.
+     * @return Number of deleted tokens.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshTokenEntity t WHERE t.userId = :userId")
+    int deleteAllByUserId(long userId);
+
+    /**
+     * Deletes a batch of tokens that expired before the given time.
+     * @param now Current time.
+     * @param batchSize Max number of deleted tokens.
+     * @return Number of deleted tokens.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN " +
+            "(SELECT id FROM refresh_tokens WHERE expires_at < :now LIMIT :batchSize)", nativeQuery = true)
+    int deleteExpiredBatch(Instant now, int batchSize);
+}
@@ -0,0 +1,44 @@
+package me.zedaster.authservice.repository;
+
+import me.zedaster.authservice.entity.RevokedAccessTokenEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for storing revoked access tokens in the database.
+ */
+@Repository
+public interface RevokedAccessTokenRepository extends CrudRepository<RevokedAccessTokenEntity, UUID> {
+    /**
+     * Finds the revocations of the tokens that are not expired yet.
+     * @param now Current time.
+     * @return Revoked tokens.
+     */
+    List<RevokedAccessTokenEntity> findAllByExpiresAtAfter(Instant now);
+
+    /**
+     * Finds the revocations made after the given time.
+     * @param since Time after which the revocations were made.
+     * @return Revoked tokens.
+     */
+    List<RevokedAccessTokenEntity> findAllByRevokedAtAfter(Instant since);
+
+    /**
+     * Deletes a batch of revocations of the tokens that expired before the given time.
+     * @param now Current time.
+     * @param batchSize Max number of deleted revocations.
+     * @return Number of deleted revocations.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM revoked_access_tokens WHERE id IN " +
+            "(SELECT id FROM revoked_access_tokens WHERE expires_at < :now LIMIT :batchSize)", nativeQuery = true)
+    int deleteExpiredBatch(Instant now, int batchSize);
+}
@@ -0,0 +1,27 @@
+package me.zedaster.authservice.repository;
+
+import me.zedaster.authservice.entity.UsedLegacyRefreshTokenEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Repository for storing the used refresh tokens issued before the rotation.
+ */
+@Repository
+public interface UsedLegacyRefreshTokenRepository extends CrudRepository<UsedLegacyRefreshTokenEntity, UUID> {
+    /**
+     * Deletes the tokens that expired before the given time. There are few of them, so they are deleted at once.
+     * @param now Current time.
+     * @return Number of deleted tokens.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UsedLegacyRefreshTokenEntity t WHERE t.expiresAt < :now")
+    int deleteExpired(Instant now);
+}
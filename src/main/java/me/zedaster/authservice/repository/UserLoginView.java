@@ -0,0 +1,28 @@
+package me.zedaster.authservice.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.zedaster.authservice.model.Role;
+
+/**
+ * Projection of the user with the fields needed for logging in.
+ */
+@Getter
+@AllArgsConstructor
+public class UserLoginView {
+    private final Long id;
+
+    private final String username;
+
+    private final String email;
+
+    /**
+     * Password hash.
+     */
+    private final String password;
+
+    /**
+     * Role of the user. It is null for {@link Role#USER} because the default role is not stored.
+     */
+    private final Role role;
+}
@@ -1,10 +1,13 @@
 package me.zedaster.authservice.repository;
 
 import me.zedaster.authservice.entity.UserEntity;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,12 +17,22 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends CrudRepository<UserEntity, Long> {
     /**
-     * Find a user by username or email.
+     * Finds the fields for logging in by username. Only one query is executed.
      * @param username Username.
+     * @return User with the given username.
+     */
+    @Query("SELECT new me.zedaster.authservice.repository.UserLoginView(u.id, u.username, u.email, u.password, r.role) " +
+            "FROM UserEntity u LEFT JOIN u.role r WHERE u.username = :username")
+    Optional<UserLoginView> findLoginViewByUsername(String username);
+
+    /**
+     * Finds the fields for logging in by email. Only one query is executed.
      * @param email Email.
-     * @return User with the given username or email.
+     * @return User with the given email.
      */
-    Optional<UserEntity> findByUsernameOrEmail(String username, String email);
+    @Query("SELECT new me.zedaster.authservice.repository.UserLoginView(u.id, u.username, u.email, u.password, r.role) " +
+            "FROM UserEntity u LEFT JOIN u.role r WHERE u.email = :email")
+    Optional<UserLoginView> findLoginViewByEmail(String email);
 
     /**
      * Checks if user with the given username exists.
@@ -36,10 +49,39 @@ public interface UserRepository extends CrudRepository<UserEntity, Long> {
     boolean existsByEmail(String email);
 
     /**
-     * Finds all usernames by user IDs.
+     * Finds the username by user ID without loading the user.
+     * @param id User ID.
+     * @return Username of the user.
+     */
+    @Query("SELECT u.username FROM UserEntity u WHERE u.id = :id")
+    Optional<String> findUsernameById(long id);
+
+    /**
+     * Finds usernames with their user IDs. Users that don't exist are skipped.
      * @param ids User IDs.
-     * @return List of usernames.
+     * @return List of user IDs with usernames in arbitrary order.
+     */
+    @Query("SELECT new me.zedaster.authservice.repository.UsernameView(u.id, u.username) FROM UserEntity u " +
+            "WHERE u.id IN :ids")
+    List<UsernameView> findAllUsernameViewsById(Collection<Long> ids);
+
+    /**
+     * Replaces the password hash of the user if it hasn't been changed since it was read.
+     * @param id ID of the user.
+     * @param oldPassword Password hash that was read.
+     * @param newPassword New password hash.
+     * @return Number of updated users (0 or 1).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserEntity u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int replacePassword(long id, String oldPassword, String newPassword);
+
+    /**
+     * Counts users whose BCrypt password hash has lower cost than the given one.
+     * @param cost Two-digit cost (e.g. "05").
+     * @return Number of users with outdated password hashes.
      */
-    @Query("SELECT u.username FROM UserEntity u WHERE u.id IN :ids")
-    List<String> findAllUsernamesById(Iterable<Long> ids);
+    @Query("SELECT COUNT(u) FROM UserEntity u WHERE SUBSTRING(u.password, 5, 2) < :cost")
+    long countByBcryptCostLessThan(String cost);
 }
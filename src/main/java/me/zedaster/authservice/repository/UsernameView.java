@@ -0,0 +1,15 @@
+package me.zedaster.authservice.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Projection of the user with its username only.
+ */
+@Getter
+@AllArgsConstructor
+public class UsernameView {
+    private final Long id;
+
+    private final String username;
+}
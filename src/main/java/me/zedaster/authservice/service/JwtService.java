@@ -1,25 +1,56 @@
 package me.zedaster.authservice.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SecureDigestAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import me.zedaster.authservice.dto.TokenPayload;
+import me.zedaster.authservice.dto.auth.AccessTokenClaimsDto;
 import me.zedaster.authservice.dto.auth.JwtPairDto;
 import me.zedaster.authservice.exception.JwtException;
 import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.model.TokenValidationResult;
 import me.zedaster.authservice.model.User;
+import me.zedaster.authservice.service.cache.AccessTokenCache;
+import me.zedaster.authservice.service.key.JwtKeyStore;
+import me.zedaster.authservice.service.key.KeyRing;
+import me.zedaster.authservice.service.token.AccessTokenRevocationList;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Service for operations with JWT.
+ * <br/><br/>
+ * Metrics (timers with histograms):
+ * <ul>
+ *     <li>auth.token.issue - issuing a new pair of tokens</li>
+ *     <li>auth.token.verify - verifying an access token, tagged by the outcome (the status of the result)</li>
+ *     <li>auth.token.refresh - refreshing the tokens, tagged by the outcome (success or invalid)</li>
+ * </ul>
+ * The timers are no-op until the service is bound to the registry.
  */
 @Service
-public class JwtService {
+public class JwtService implements MeterBinder {
     /**
      * Lifetime of the JWT access token in milliseconds. (5 minutes)
      */
@@ -31,37 +62,204 @@ public class JwtService {
     private static final long REFRESH_TOKEN_LIFETIME = 30 * 24 * 60 * 60 * 1000L;
 
     /**
-     * Secret key for signing the JWT access token.
+     * Max length of a token that is parsed. Longer tokens are malformed.
      */
-    private final SecretKey accessSecretKey;
+    private static final int MAX_TOKEN_LENGTH = 4096;
 
     /**
-     * Secret key for signing the JWT refresh token.
+     * Time of the clock of the access token parser.
      */
-    private final SecretKey refreshSecretKey;
+    private static final Date EPOCH = new Date(0);
 
-    public JwtService(@Value("${jwt.secret.access}") String accessTokenSecret,
-                      @Value("${jwt.secret.refresh}") String refreshTokenSecret) {
-        this.accessSecretKey = getSecretKey(accessTokenSecret);
-        this.refreshSecretKey = getSecretKey(refreshTokenSecret);
+    /**
+     * Name of the claim with the ID of the family of the refresh token.
+     */
+    private static final String FAMILY_ID_CLAIM = "fid";
+
+    /**
+     * Rings of the keys for signing and verifying the tokens.
+     */
+    private final JwtKeyStore keyStore;
+
+    /**
+     * Parser of the JWT access tokens. It is immutable and thread-safe, so it is built only once.
+     * <br/>
+     * Its clock is stopped at the epoch, so it never throws an exception for expired tokens. The expiration is checked
+     * after parsing.
+     */
+    private final JwtParser accessTokenParser;
+
+    /**
+     * Parser of the JWT refresh tokens. It is immutable and thread-safe, so it is built only once.
+     */
+    private final JwtParser refreshTokenParser;
+
+    /**
+     * Cache of the access tokens that have already been verified.
+     */
+    private final AccessTokenCache accessTokenCache;
+
+    /**
+     * Store of the unused refresh tokens.
+     */
+    private final RefreshTokenStore refreshTokenStore;
+
+    /**
+     * Access tokens revoked before their expiration.
+     */
+    private final AccessTokenRevocationList revocationList;
+
+    /**
+     * Refresh tokens issued before the rotation (without ID and family) are exchanged once until this time. They live
+     * 30 days, so none of them is valid after it anyway.
+     */
+    private final Instant legacyRefreshAcceptedUntil;
+
+    /**
+     * Timer of issuing new pairs of tokens.
+     */
+    private Timer issueTimer;
+
+    /**
+     * Timers of verifying access tokens by the status of the result.
+     */
+    private Map<TokenValidationResult.Status, Timer> verifyTimers;
+
+    /**
+     * Timer of successful refreshes.
+     */
+    private Timer refreshSuccessTimer;
+
+    /**
+     * Timer of refreshes with invalid tokens.
+     */
+    private Timer refreshInvalidTimer;
+
+    public JwtService(JwtKeyStore keyStore, AccessTokenCache accessTokenCache, RefreshTokenStore refreshTokenStore,
+                      AccessTokenRevocationList revocationList,
+                      @Value("${jwt.refresh.legacy-accepted-until}") Instant legacyRefreshAcceptedUntil) {
+        this.keyStore = keyStore;
+        this.accessTokenParser = Jwts.parser()
+                .keyLocator(new KeyRingLocator(keyStore::getAccessKeys))
+                .clock(() -> EPOCH)
+                .build();
+        this.refreshTokenParser = Jwts.parser()
+                .keyLocator(new KeyRingLocator(keyStore::getRefreshKeys))
+                .build();
+        this.accessTokenCache = accessTokenCache;
+        this.refreshTokenStore = refreshTokenStore;
+        this.revocationList = revocationList;
+        this.legacyRefreshAcceptedUntil = legacyRefreshAcceptedUntil;
+        // A composite registry without registries creates no-op meters
+        registerTimers(new CompositeMeterRegistry());
     }
 
     /**
      * Validate the JWT access token.
      * @param accessToken JWT access token.
+     * @return Payload of the token.
      * @throws JwtException If the token is invalid.
      */
-    public void validateAccessToken(String accessToken) throws JwtException {
+    public TokenPayload validateAccessToken(String accessToken) throws JwtException {
+        return verifyAccessToken(accessToken).getPayload();
+    }
+
+    /**
+     * Check the JWT access token without throwing an exception if it is invalid.
+     * @param accessToken JWT access token.
+     * @return True if the token is valid.
+     */
+    public boolean isAccessTokenValid(String accessToken) {
+        return checkAccessToken(accessToken).isValid();
+    }
+
+    /**
+     * Check the JWT access token. No exceptions are thrown for invalid tokens, they are reported by the status of
+     * the result. The claims of valid tokens are taken from the cache if possible.
+     * @param accessToken JWT access token.
+     * @return Result of the validation with the payload of the valid token.
+     */
+    public TokenValidationResult checkAccessToken(String accessToken) {
+        long start = System.nanoTime();
+        TokenValidationResult result = checkAccessTokenUntimed(accessToken);
+        verifyTimers.get(result.getStatus()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    /**
+     * Check the JWT access token without recording the time.
+     * @param accessToken JWT access token.
+     * @return Result of the validation with the payload of the valid token.
+     */
+    private TokenValidationResult checkAccessTokenUntimed(String accessToken) {
+        if (!isWellFormed(accessToken)) {
+            return TokenValidationResult.malformed();
+        }
+
+        Claims claims = accessTokenCache.getIfPresent(accessToken);
+        boolean cached = claims != null;
+        if (!cached) {
+            try {
+                claims = accessTokenParser.parseSignedClaims(accessToken).getPayload();
+            } catch (SignatureException e) {
+                return TokenValidationResult.badSignature();
+            } catch (io.jsonwebtoken.JwtException | IllegalArgumentException e) {
+                return TokenValidationResult.malformed();
+            }
+        }
+
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return TokenValidationResult.malformed();
+        }
+        if (expiration.getTime() <= System.currentTimeMillis()) {
+            return TokenValidationResult.expired();
+        }
+        if (revocationList.isRevoked(claims.getId())) {
+            return TokenValidationResult.revoked();
+        }
+
+        TokenPayload payload;
         try {
-            Jwts
-                    .parser()
-                    .verifyWith(accessSecretKey)
-                    .build()
-                    .parseSignedClaims(accessToken);
-        } catch (io.jsonwebtoken.JwtException e) {
-            throw new JwtException("The access token is invalid!");
+            payload = getTokenPayload(claims);
+        } catch (io.jsonwebtoken.JwtException | IllegalArgumentException e) {
+            return TokenValidationResult.malformed();
+        }
+        if (!cached) {
+            // The payload is checked before the token gets into the cache
+            accessTokenCache.put(accessToken, claims);
         }
+        return TokenValidationResult.valid(payload, expiration.getTime(), claims.getId());
+    }
 
+    /**
+     * Validate the JWT access token and return its claims.
+     * @param accessToken JWT access token.
+     * @return Claims of the token including its expiration time.
+     * @throws JwtException If the token is invalid.
+     */
+    public AccessTokenClaimsDto getAccessTokenClaims(String accessToken) throws JwtException {
+        TokenValidationResult result = verifyAccessToken(accessToken);
+        TokenPayload payload = result.getPayload();
+        return new AccessTokenClaimsDto(String.valueOf(payload.getUserId()), payload.getUsername(), payload.getRole(),
+                result.getExpiration() / 1000);
+    }
+
+    /**
+     * Revoke the JWT access token before its expiration.
+     * @param accessToken Valid JWT access token.
+     * @throws JwtException If the token is invalid, already revoked or it has no ID.
+     */
+    public void revokeAccessToken(String accessToken) throws JwtException {
+        TokenValidationResult result = verifyAccessToken(accessToken);
+        if (result.getTokenId() == null) {
+            throw new JwtException("The access token can't be revoked!");
+        }
+        try {
+            revocationList.revoke(result.getTokenId(), result.getExpiration());
+        } catch (IllegalArgumentException e) {
+            throw new JwtException("The access token can't be revoked!");
+        }
     }
 
     /**
@@ -75,66 +273,277 @@ public class JwtService {
     }
 
     /**
-     * Generate a pair of JWT access and refresh tokens.
+     * Generate a pair of JWT access and refresh tokens. The refresh token starts a new family.
      * @param payload Payload of the tokens.
      * @return Pair of JWT access and refresh tokens.
      */
     public JwtPairDto generateTokens(TokenPayload payload) {
-        String accessToken = Jwts.builder()
-                .claim("sub", String.valueOf(payload.getUserId()))
-                .claim("username", payload.getUsername())
-                .claim("role", payload.getRole().name())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + ACCESS_TOKEN_LIFETIME))
-                .signWith(accessSecretKey)
-                .compact();
+        long start = System.nanoTime();
+        JwtPairDto pair = generateTokens(payload, UUID.randomUUID());
+        issueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return pair;
+    }
 
-        String refreshToken = Jwts.builder()
-                .claim("sub", String.valueOf(payload.getUserId()))
-                .claim("username", payload.getUsername())
-                .claim("role", payload.getRole().name())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + REFRESH_TOKEN_LIFETIME))
-                .signWith(refreshSecretKey)
-                .compact();
+    /**
+     * Refresh the pair of JWT access and refresh tokens. The refresh token can be used only once. If it is used again,
+     * all refresh tokens of its family are revoked.
+     * @param refreshToken Refresh token.
+     * @return New pair of JWT access and refresh tokens.
+     * @throws JwtException If the refresh token is invalid, used or revoked.
+     */
+    public JwtPairDto refreshToken(String refreshToken) throws JwtException {
+        long start = System.nanoTime();
+        try {
+            JwtPairDto pair = refreshTokenUntimed(refreshToken);
+            refreshSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return pair;
+        } catch (JwtException e) {
+            refreshInvalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
 
-        return new JwtPairDto(accessToken, refreshToken);
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registerTimers(registry);
     }
 
     /**
-     * Refresh the pair of JWT access and refresh tokens.
+     * Refresh the pair of JWT access and refresh tokens without recording the time.
      * @param refreshToken Refresh token.
      * @return New pair of JWT access and refresh tokens.
-     * @throws JwtException If the refresh token is invalid.
+     * @throws JwtException If the refresh token is invalid, used or revoked.
      */
-    public JwtPairDto refreshToken(String refreshToken) throws JwtException {
+    private JwtPairDto refreshTokenUntimed(String refreshToken) throws JwtException {
         TokenPayload tokenPayload;
+        Claims claims;
+
+        try {
+            claims = refreshTokenParser.parseSignedClaims(refreshToken).getPayload();
+            tokenPayload = getTokenPayload(claims);
+        } catch (io.jsonwebtoken.JwtException | IllegalArgumentException e) {
+            throw new JwtException("The refresh token is invalid!");
+        }
+
+        String familyIdClaim = claims.get(FAMILY_ID_CLAIM, String.class);
+        if (claims.getId() == null && familyIdClaim == null) {
+            return refreshLegacyToken(refreshToken, claims, tokenPayload);
+        }
 
+        if (claims.getId() == null || familyIdClaim == null) {
+            throw new JwtException("The refresh token is invalid!");
+        }
+        UUID tokenId;
+        UUID familyId;
         try {
-            Claims claims = Jwts
-                    .parser()
-                    .verifyWith(refreshSecretKey)
-                    .build()
-                    .parseSignedClaims(refreshToken)
-                    .getPayload();
-            long sub = Long.parseLong(claims.get("sub", String.class));
-            String username = claims.get("username", String.class);
-            Role role = Role.valueOf(claims.get("role", String.class));
-            tokenPayload = new TokenPayload(sub, username, role);
-        } catch (io.jsonwebtoken.JwtException e) {
+            tokenId = UUID.fromString(claims.getId());
+            familyId = UUID.fromString(familyIdClaim);
+        } catch (IllegalArgumentException e) {
             throw new JwtException("The refresh token is invalid!");
         }
 
-        return generateTokens(tokenPayload);
+        if (!refreshTokenStore.consume(tokenId, familyId)) {
+            throw new JwtException("The refresh token is invalid!");
+        }
+        return generateTokens(tokenPayload, familyId);
     }
 
     /**
-     * Transform a secret string to a secret key.
-     * @param secret Secret string.
-     * @return Secret key.
+     * Refresh the pair of JWT tokens by a refresh token issued before the rotation. Such a token has no ID, so it's
+     * identified by a UUID derived from the token. It's exchanged only once, and the new refresh token starts a new
+     * family.
+     * @param refreshToken Verified refresh token.
+     * @param claims Claims of the token.
+     * @param tokenPayload Payload of the token.
+     * @return New pair of JWT access and refresh tokens.
+     * @throws JwtException If legacy tokens are not accepted anymore or the token is used.
      */
-    private SecretKey getSecretKey(String secret) {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private JwtPairDto refreshLegacyToken(String refreshToken, Claims claims, TokenPayload tokenPayload)
+            throws JwtException {
+        Date expiration = claims.getExpiration();
+        if (expiration == null || !Instant.now().isBefore(legacyRefreshAcceptedUntil)) {
+            throw new JwtException("The refresh token is invalid!");
+        }
+        UUID tokenId = UUID.nameUUIDFromBytes(refreshToken.getBytes(StandardCharsets.UTF_8));
+        if (!refreshTokenStore.consumeLegacy(tokenId, expiration.toInstant())) {
+            throw new JwtException("The refresh token is invalid!");
+        }
+        return generateTokens(tokenPayload, UUID.randomUUID());
+    }
+
+    /**
+     * Generate a pair of JWT access and refresh tokens and remember the refresh token.
+     * @param payload Payload of the tokens.
+     * @param familyId ID of the family of the refresh token.
+     * @return Pair of JWT access and refresh tokens.
+     */
+    private JwtPairDto generateTokens(TokenPayload payload, UUID familyId) {
+        // Both tokens share the same claims and issue time, so they are assembled only once
+        Map<String, Object> claims = Map.of(
+                "sub", String.valueOf(payload.getUserId()),
+                "username", payload.getUsername(),
+                "role", payload.getRole().name()
+        );
+        long now = System.currentTimeMillis();
+        Date issuedAt = new Date(now);
+        KeyRing accessKeys = keyStore.getAccessKeys();
+        KeyRing refreshKeys = keyStore.getRefreshKeys();
+
+        String accessToken = signWith(Jwts.builder(), accessKeys)
+                .id(UUID.randomUUID().toString())
+                .claims(claims)
+                .issuedAt(issuedAt)
+                .expiration(new Date(now + ACCESS_TOKEN_LIFETIME))
+                .compact();
+
+        UUID refreshTokenId = UUID.randomUUID();
+        long refreshExpiration = now + REFRESH_TOKEN_LIFETIME;
+        String refreshToken = signWith(Jwts.builder(), refreshKeys)
+                .id(refreshTokenId.toString())
+                .claims(claims)
+                .claim(FAMILY_ID_CLAIM, familyId.toString())
+                .issuedAt(issuedAt)
+                .expiration(new Date(refreshExpiration))
+                .compact();
+        refreshTokenStore.save(refreshTokenId, familyId, payload.getUserId(), Instant.ofEpochMilli(refreshExpiration));
+
+        return new JwtPairDto(accessToken, refreshToken);
+    }
+
+    /**
+     * Verify the JWT access token.
+     * @param accessToken JWT access token.
+     * @return Result of the validation of the valid token.
+     * @throws JwtException If the token is invalid.
+     */
+    private TokenValidationResult verifyAccessToken(String accessToken) throws JwtException {
+        TokenValidationResult result = checkAccessToken(accessToken);
+        if (!result.isValid()) {
+            throw new JwtException("The access token is invalid!");
+        }
+        return result;
+    }
+
+    /**
+     * Cheaply check the structure of the signed token before parsing, so garbage tokens don't cost exceptions of
+     * the parser.
+     * @param token JWT token.
+     * @return True if the token consists of 3 non-empty Base64URL parts.
+     */
+    private static boolean isWellFormed(String token) {
+        if (token == null || token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int dots = 0;
+        char previous = '.';
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (previous == '.') {
+                    return false;
+                }
+                dots++;
+            } else if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return false;
+            }
+            previous = c;
+        }
+        return dots == 2 && previous != '.';
+    }
+
+    /**
+     * Extract the payload from the claims of the verified token.
+     * @param claims Claims of the token.
+     * @return Payload of the token.
+     * @throws MalformedJwtException If the claims don't contain the payload.
+     * @throws IllegalArgumentException If the subject or the role is incorrect.
+     */
+    private TokenPayload getTokenPayload(Claims claims) {
+        String sub = claims.getSubject();
+        String username = claims.get("username", String.class);
+        String role = claims.get("role", String.class);
+        if (sub == null || username == null || role == null) {
+            throw new MalformedJwtException("The token doesn't contain the payload!");
+        }
+        return new TokenPayload(sub, username, Role.valueOf(role));
+    }
+
+    /**
+     * Creates the timers in the registry.
+     * @param registry Registry of the metrics.
+     */
+    private void registerTimers(MeterRegistry registry) {
+        issueTimer = Timer.builder("auth.token.issue")
+                .description("Time of issuing a new pair of tokens")
+                .publishPercentileHistogram()
+                .register(registry);
+        Map<TokenValidationResult.Status, Timer> timers = new EnumMap<>(TokenValidationResult.Status.class);
+        for (TokenValidationResult.Status status : TokenValidationResult.Status.values()) {
+            timers.put(status, Timer.builder("auth.token.verify")
+                    .description("Time of verifying an access token")
+                    .tag("outcome", status.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        verifyTimers = timers;
+        refreshSuccessTimer = refreshTimer(registry, "success");
+        refreshInvalidTimer = refreshTimer(registry, "invalid");
+    }
+
+    /**
+     * Creates the timer of refreshes with the outcome.
+     * @param registry Registry of the metrics.
+     * @param outcome Outcome of the refresh.
+     * @return Timer.
+     */
+    private static Timer refreshTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("auth.token.refresh")
+                .description("Time of refreshing the tokens")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Signs the token with the current key of the ring.
+     * @param builder Builder of the token.
+     * @param keyRing Key ring.
+     * @return Builder of the signed token.
+     */
+    @SuppressWarnings("unchecked")
+    private static JwtBuilder signWith(JwtBuilder builder, KeyRing keyRing) {
+        builder.header().keyId(keyRing.getCurrentKeyId());
+        if (keyRing.getAlgorithm() == null) {
+            // The HMAC algorithm is chosen by the length of the secret
+            return builder.signWith(keyRing.getSigningKey());
+        }
+        SecureDigestAlgorithm<Key, ?> algorithm =
+                (SecureDigestAlgorithm<Key, ?>) Jwts.SIG.get().forKey(keyRing.getAlgorithm());
+        return builder.signWith(keyRing.getSigningKey(), algorithm);
+    }
+
+    /**
+     * Finds the key for verifying a token by the key ID in its header. Tokens without a key ID were issued before the
+     * key rotation, so they are verified by the default key.
+     */
+    private static class KeyRingLocator extends LocatorAdapter<Key> {
+        /**
+         * Supplies the current ring, so reloaded keys are used at once.
+         */
+        private final Supplier<KeyRing> keyRingSupplier;
+
+        private KeyRingLocator(Supplier<KeyRing> keyRingSupplier) {
+            this.keyRingSupplier = keyRingSupplier;
+        }
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            String keyId = header.getKeyId() == null ? JwtKeyStore.DEFAULT_KEY_ID : header.getKeyId();
+            Key key = keyRingSupplier.get().getVerificationKey(keyId);
+            if (key == null) {
+                throw new SignatureException("The token is signed by an unknown key!");
+            }
+            return key;
+        }
     }
 }
@@ -0,0 +1,139 @@
+package me.zedaster.authservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import me.zedaster.authservice.exception.OverloadedException;
+import me.zedaster.authservice.repository.UserRepository;
+import me.zedaster.authservice.service.encoder.BcryptPasswordEncoder;
+import me.zedaster.authservice.service.encoder.PasswordEncoder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service for upgrading outdated password hashes in the background.
+ * <br/><br/>
+ * Upgrades are queued in a single background thread, so they are never on the critical path of the login. If the queue
+ * is full or the password hashing is overloaded, the upgrade is skipped. It will be tried again at the next login.
+ * <br/><br/>
+ * Metrics:
+ * <ul>
+ *     <li>password.upgrade.completed - number of upgraded hashes</li>
+ *     <li>password.hashes.outdated - number of hashes with a lower cost than the current one</li>
+ * </ul>
+ */
+@Service
+public class PasswordUpgradeService implements MeterBinder {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Repository for storing users.
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Password encoder for the new hashes.
+     */
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * BCrypt encoder. It tells the current cost of the hashes.
+     */
+    private final BcryptPasswordEncoder bcryptPasswordEncoder;
+
+    /**
+     * Background thread with a bounded queue of upgrades.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Number of upgraded hashes.
+     */
+    private final AtomicLong upgradedCount = new AtomicLong();
+
+    /**
+     * Last counted number of outdated hashes.
+     */
+    private final AtomicLong outdatedCount = new AtomicLong();
+
+    public PasswordUpgradeService(UserRepository userRepository,
+                                  PasswordEncoder passwordEncoder,
+                                  BcryptPasswordEncoder bcryptPasswordEncoder,
+                                  @Value("${password.upgrade.queue-capacity}") int queueCapacity) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptPasswordEncoder = bcryptPasswordEncoder;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-upgrade-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Queues the upgrade of the password hash. The method returns immediately.
+     * @param userId ID of the user.
+     * @param rawPassword Correct raw password of the user.
+     * @param encodedPassword Current outdated password hash of the user.
+     */
+    public void upgradeAsync(long userId, String rawPassword, String encodedPassword) {
+        executor.execute(() -> upgrade(userId, rawPassword, encodedPassword));
+    }
+
+    /**
+     * Upgrades the password hash. It is kept if the password was changed in the meantime.
+     * @param userId ID of the user.
+     * @param rawPassword Correct raw password of the user.
+     * @param encodedPassword Current outdated password hash of the user.
+     */
+    private void upgrade(long userId, String rawPassword, String encodedPassword) {
+        try {
+            String newHash = passwordEncoder.encode(rawPassword);
+            if (userRepository.replacePassword(userId, encodedPassword, newHash) == 1) {
+                upgradedCount.incrementAndGet();
+            }
+        } catch (OverloadedException e) {
+            // The upgrade will be tried again at the next login
+        } catch (RuntimeException e) {
+            logger.warn("Failed to upgrade the password hash of the user %d".formatted(userId), e);
+        }
+    }
+
+    /**
+     * Counts the outdated hashes for the metric. Counting scans the users table, so it's done in the background and the
+     * metric only reads the last result. If the count fails, the last result is kept.
+     */
+    @Scheduled(fixedDelayString = "${password.upgrade.count-interval}")
+    public void countOutdated() {
+        try {
+            String cost = "%02d".formatted(bcryptPasswordEncoder.getStrength());
+            outdatedCount.set(userRepository.countByBcryptCostLessThan(cost));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to count the outdated password hashes", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("password.upgrade.completed", upgradedCount, AtomicLong::get)
+                .description("Number of password hashes upgraded after login")
+                .register(registry);
+        Gauge.builder("password.hashes.outdated", outdatedCount, AtomicLong::get)
+                .description("Number of password hashes with a lower cost than the current one")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
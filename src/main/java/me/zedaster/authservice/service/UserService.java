@@ -3,6 +3,7 @@ package me.zedaster.authservice.service;
 import lombok.AllArgsConstructor;
 import me.zedaster.authservice.dto.auth.NewUserDto;
 import me.zedaster.authservice.dto.auth.UserCredentialsDto;
+import me.zedaster.authservice.dto.profile.UsernamesDto;
 import me.zedaster.authservice.entity.UserEntity;
 import me.zedaster.authservice.entity.UserRoleEntity;
 import me.zedaster.authservice.exception.AuthException;
@@ -10,14 +11,27 @@ import me.zedaster.authservice.exception.ProfileException;
 import me.zedaster.authservice.exception.UserIdException;
 import me.zedaster.authservice.model.Role;
 import me.zedaster.authservice.model.User;
+import me.zedaster.authservice.repository.UserLoginView;
 import me.zedaster.authservice.repository.UserRepository;
+import me.zedaster.authservice.repository.UsernameView;
+import me.zedaster.authservice.service.cache.UsernameCache;
 import me.zedaster.authservice.service.encoder.PasswordEncoder;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for working with users
@@ -25,6 +39,11 @@ import java.util.Optional;
 @Service
 @AllArgsConstructor
 public class UserService {
+    /**
+     * Number of user IDs looked up by one query in {@link #resolveUsernamesInChunks(List, Consumer)}. Queries of the
+     * same size reuse the same prepared statement and plan.
+     */
+    public static final int USERNAMES_CHUNK_SIZE = 512;
 
     /**
      * Repository for storing users.
@@ -36,32 +55,56 @@ public class UserService {
      */
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Service for upgrading outdated password hashes.
+     */
+    private final PasswordUpgradeService passwordUpgradeService;
+
+    /**
+     * Cache of usernames by user IDs.
+     */
+    private final UsernameCache usernameCache;
+
+    /**
+     * Store of the unused refresh tokens.
+     */
+    private final RefreshTokenStore refreshTokenStore;
+
     /**
      * Creates a new user.
      * @param newUserDto DTO with information of the user to register.
      * @throws AuthException If the username or email is already taken.
      * @return ID of the registered user.
      */
-    @Transactional
     public User createUser(NewUserDto newUserDto) throws AuthException {
-        String username = newUserDto.getUsername();
-        String email = newUserDto.getEmail();
-        String password = newUserDto.getPassword();
-
-        if (userRepository.existsByUsername(username)) {
-            throw new AuthException("User with the same username already exists!");
-        }
-
-        if (userRepository.existsByEmail(email)) {
-            throw new AuthException("User with the same email already exists!");
-        }
-
+        // The password is hashed before the insert shows if the user is a duplicate, so duplicates take a slot of the
+        // hashing executor too. Registrations are rare compared to logins, and the executor sheds the excess with 503
         UserEntity userEntity = UserEntity.builder()
-                .username(username)
-                .password(passwordEncoder.encode(password))
-                .email(email)
+                .username(newUserDto.getUsername())
+                .password(passwordEncoder.encode(newUserDto.getPassword()))
+                .email(newUserDto.getEmail())
                 .build();
-        userRepository.save(userEntity);
+
+        // The unique constraints are checked by the insert itself, so concurrent registrations can't both succeed
+        try {
+            userRepository.save(userEntity);
+        } catch (DataIntegrityViolationException e) {
+            String constraintName = getConstraintName(e);
+            if (constraintName.contains(UserEntity.USERNAME_CONSTRAINT)) {
+                throw new AuthException("User with the same username already exists!");
+            }
+            if (constraintName.contains(UserEntity.EMAIL_CONSTRAINT)) {
+                throw new AuthException("User with the same email already exists!");
+            }
+            // The constraints may still have the names generated by Hibernate (e.g. before the migrations)
+            if (userRepository.existsByUsername(newUserDto.getUsername())) {
+                throw new AuthException("User with the same username already exists!");
+            }
+            if (userRepository.existsByEmail(newUserDto.getEmail())) {
+                throw new AuthException("User with the same email already exists!");
+            }
+            throw e;
+        }
 
         return User.fromEntityAndRole(userEntity, Role.USER);
     }
@@ -95,19 +138,26 @@ public class UserService {
     public Optional<User> getUser(UserCredentialsDto credentials) {
         String usernameOrEmail = credentials.getUsernameOrEmail();
         String rawPassword = credentials.getPassword();
-        Optional<UserEntity> optionalEntity = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail);
-        if (optionalEntity.isEmpty()) {
+        // Usernames can't contain '@', so only one unique index is checked
+        Optional<UserLoginView> optionalView = usernameOrEmail.indexOf('@') >= 0
+                ? userRepository.findLoginViewByEmail(usernameOrEmail)
+                : userRepository.findLoginViewByUsername(usernameOrEmail);
+        if (optionalView.isEmpty()) {
             return Optional.empty();
         }
-        UserEntity userEntity = optionalEntity.get();
+        UserLoginView userView = optionalView.get();
 
-        String encryptedPassword = userEntity.getPassword();
+        String encryptedPassword = userView.getPassword();
         if (!passwordEncoder.matches(rawPassword, encryptedPassword)) {
             return Optional.empty();
         }
 
-        Role role = getRole(userEntity);
-        return Optional.of(User.fromEntityAndRole(userEntity, role));
+        if (passwordEncoder.upgradeEncoding(encryptedPassword)) {
+            passwordUpgradeService.upgradeAsync(userView.getId(), rawPassword, encryptedPassword);
+        }
+
+        Role role = userView.getRole() == null ? Role.USER : userView.getRole();
+        return Optional.of(new User(userView.getId(), userView.getUsername(), userView.getEmail(), role));
     }
 
     /**
@@ -121,9 +171,11 @@ public class UserService {
             throw UserIdException.newIncorrectException(userId);
         }
 
-        UserEntity userEntity = userRepository.findById(userId)
-                .orElseThrow(() -> UserIdException.newNotFoundException(userId));
-        return userEntity.getUsername();
+        String username = usernameCache.get(userId, id -> userRepository.findUsernameById(id).orElse(null));
+        if (username == null) {
+            throw UserIdException.newNotFoundException(userId);
+        }
+        return username;
     }
 
     /**
@@ -139,11 +191,52 @@ public class UserService {
             }
         }
 
-        List<String> result = userRepository.findAllUsernamesById(userIds);
-        if (result.size() != userIds.size()) {
+        // Only the users missing in the cache are loaded, in one query
+        Map<Long, String> usernames = usernameCache.getAll(userIds, this::loadUsernames);
+        if (usernames.size() != userIds.size()) {
             throw UserIdException.newManyNotFoundException();
         }
-        return result;
+        return userIds.stream().map(usernames::get).toList();
+    }
+
+    /**
+     * Resolves usernames of users by their IDs. Duplicate IDs are resolved once. Users that don't exist or have
+     * incorrect IDs are reported as missing instead of failing the whole batch.
+     * @param userIds IDs of the users
+     * @return Usernames by IDs and missing IDs, both in the order of the given IDs
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public UsernamesDto resolveUsernames(List<Long> userIds) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(userIds);
+        List<Long> correctIds = uniqueIds.stream().filter(id -> id > 0).toList();
+        Map<Long, String> found = usernameCache.getAll(correctIds, this::loadUsernames);
+
+        Map<Long, String> usernames = new LinkedHashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long userId : uniqueIds) {
+            String username = found.get(userId);
+            if (username != null) {
+                usernames.put(userId, username);
+            } else {
+                missingIds.add(userId);
+            }
+        }
+        return new UsernamesDto(usernames, missingIds);
+    }
+
+    /**
+     * Resolves usernames of many users in chunks of {@link #USERNAMES_CHUNK_SIZE}, so the result of every chunk can be
+     * sent before the next one is loaded. Duplicate IDs are resolved once even if they are in different chunks.
+     * @param userIds IDs of the users
+     * @param chunkConsumer Receives the result of every chunk in the order of the given IDs
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void resolveUsernamesInChunks(List<Long> userIds, Consumer<UsernamesDto> chunkConsumer) {
+        List<Long> uniqueIds = List.copyOf(new LinkedHashSet<>(userIds));
+        for (int from = 0; from < uniqueIds.size(); from += USERNAMES_CHUNK_SIZE) {
+            int to = Math.min(from + USERNAMES_CHUNK_SIZE, uniqueIds.size());
+            chunkConsumer.accept(resolveUsernames(uniqueIds.subList(from, to)));
+        }
     }
 
     /**
@@ -164,7 +257,7 @@ public class UserService {
     }
 
     /**
-     * Change the username of the user.
+     * Change the username of the user. All refresh tokens of the user are revoked.
      * @param userId ID of the user.
      * @param newUsername New valid username.
      * @throws ProfileException If the username is already taken.
@@ -184,10 +277,12 @@ public class UserService {
                 .orElseThrow(() -> UserIdException.newNotFoundException(userId));
         userEntity.setUsername(newUsername);
         userRepository.save(userEntity);
+        usernameCache.invalidateAfterCommit(userId);
+        refreshTokenStore.revokeAll(userId);
     }
 
     /**
-     * Changes the password of the user
+     * Changes the password of the user. All refresh tokens of the user are revoked.
      * @param userId ID of the user
      * @param newPassword New valid password
      */
@@ -202,6 +297,7 @@ public class UserService {
         String newHash = passwordEncoder.encode(newPassword);
         userEntity.setPassword(newHash);
         userRepository.save(userEntity);
+        refreshTokenStore.revokeAll(userId);
     }
 
     /**
@@ -216,4 +312,26 @@ public class UserService {
         }
         return userRoleEntity.getRole();
     }
+
+    /**
+     * Loads usernames of the users from the database.
+     * @param userIds IDs of the users.
+     * @return Usernames by the user IDs. Users that don't exist are absent.
+     */
+    private Map<Long, String> loadUsernames(Set<? extends Long> userIds) {
+        return userRepository.findAllUsernameViewsById(List.copyOf(userIds)).stream()
+                .collect(Collectors.toMap(UsernameView::getId, UsernameView::getUsername));
+    }
+
+    /**
+     * Extracts the name of the violated constraint.
+     * @param e Exception thrown by the repository.
+     * @return Name of the constraint in lower case or empty string if it is unknown.
+     */
+    private static String getConstraintName(DataIntegrityViolationException e) {
+        if (e.getCause() instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+            return violation.getConstraintName().toLowerCase();
+        }
+        return "";
+    }
 }
@@ -0,0 +1,118 @@
+package me.zedaster.authservice.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of successfully verified JWT access tokens. A token is remembered until its expiration.
+ * <br/><br/>
+ * Tokens are keyed by their SHA-256 digest, so the cache doesn't keep the bearer tokens themselves. Only valid tokens
+ * are put into the cache, so a flood of garbage tokens never reaches it. Size-based eviction uses the frequency-based
+ * admission of Caffeine, so a burst of new tokens can't push out the tokens that are verified over and over.
+ */
+@Component
+public class AccessTokenCache implements MeterBinder {
+    /**
+     * Verified claims by the digest of the token.
+     */
+    private final Cache<ByteBuffer, Claims> cache;
+
+    public AccessTokenCache(@Value("${jwt.cache.max-size}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ExpirationExpiry())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns claims of the token if it was verified before and it is not expired yet.
+     * @param accessToken JWT access token.
+     * @return Claims of the token or null if the token is not in the cache.
+     */
+    public Claims getIfPresent(String accessToken) {
+        return cache.getIfPresent(digest(accessToken));
+    }
+
+    /**
+     * Remembers the successfully verified token until its expiration.
+     * @param accessToken Verified JWT access token.
+     * @param claims Claims of the token.
+     */
+    public void put(String accessToken, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return;
+        }
+        cache.put(digest(accessToken), claims);
+    }
+
+    /**
+     * Forgets all verified tokens, e.g. when the signing keys are changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns hit, miss and eviction counters of the cache.
+     * @return Statistics of the cache.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "verifiedAccessTokens");
+    }
+
+    /**
+     * Computes the cache key of the token.
+     * @param accessToken JWT access token.
+     * @return SHA-256 digest of the token.
+     */
+    private static ByteBuffer digest(String accessToken) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(messageDigest.digest(accessToken.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Expires every entry at the expiration time of its token.
+     */
+    private static class ExpirationExpiry implements Expiry<ByteBuffer, Claims> {
+        @Override
+        public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+            long millisLeft = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(millisLeft, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
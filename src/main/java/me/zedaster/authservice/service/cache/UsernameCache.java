@@ -0,0 +1,135 @@
+package me.zedaster.authservice.service.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Read-through cache of usernames by user IDs. Usernames are read by other services on every render, but they are
+ * rarely changed.
+ * <br/><br/>
+ * Entries are evicted by size and expire after the TTL, so a change that was missed by this instance (e.g. it was made
+ * by another instance) is visible after the TTL at most. Hit ratio and load time are exposed as the metrics of the
+ * {@code usernames} cache.
+ * <br/><br/>
+ * The cache holds futures of the usernames. The queries run in the calling thread outside the locks of the map, so a
+ * virtual thread isn't pinned to its carrier while it waits for the database. A username that is invalidated while it's
+ * loaded is returned to the waiting callers, but it isn't put back to the cache.
+ */
+@Component
+public class UsernameCache implements MeterBinder {
+    /**
+     * Usernames by user IDs.
+     */
+    private final AsyncCache<Long, String> cache;
+
+    public UsernameCache(@Value("${username.cache.max-size}") long maxSize,
+                         @Value("${username.cache.ttl}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the username of the user. It is loaded if it's not in the cache.
+     * @param userId ID of the user.
+     * @param loader Loads the username by the user ID. Returns null if the user doesn't exist.
+     * @return Username or null if the user doesn't exist.
+     */
+    public String get(long userId, LongFunction<String> loader) {
+        CompletableFuture<String> newFuture = new CompletableFuture<>();
+        CompletableFuture<String> future = cache.get(userId, (id, executor) -> newFuture);
+        if (future == newFuture) {
+            try {
+                newFuture.complete(loader.apply(userId));
+            } catch (RuntimeException e) {
+                newFuture.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return join(future);
+    }
+
+    /**
+     * Returns usernames of the users. Only the users that are not in the cache are loaded, all at once.
+     * @param userIds IDs of the users.
+     * @param loader Loads usernames by the user IDs. Users that don't exist are absent in the result.
+     * @return Usernames by the user IDs. Users that don't exist are absent.
+     */
+    public Map<Long, String> getAll(Iterable<Long> userIds,
+                                    Function<Set<? extends Long>, Map<Long, String>> loader) {
+        // The missing users are loaded right in the calling thread
+        return join(cache.getAll(userIds, (ids, executor) -> CompletableFuture.completedFuture(loader.apply(ids))));
+    }
+
+    /**
+     * Removes the username of the user from the cache after the current transaction is committed. Otherwise, a
+     * concurrent read could put the old username back before the change is visible.
+     * @param userId ID of the user.
+     */
+    public void invalidateAfterCommit(long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.synchronous().invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.synchronous().invalidate(userId);
+            }
+        });
+    }
+
+    /**
+     * Removes all usernames from the cache.
+     */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Returns hit, miss and load counters of the cache.
+     * @return Statistics of the cache.
+     */
+    public CacheStats getStats() {
+        return cache.synchronous().stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "usernames");
+    }
+
+    /**
+     * Waits for the loaded value. A failure of the loader is rethrown as is.
+     * @param future Future of the value.
+     * @return Value of the future.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package me.zedaster.authservice.service.encoder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Calibrator that picks the BCrypt cost for the current machine.
+ * <br/><br/>
+ * It measures the median time of {@link BCrypt#hashpw(String, String)} for the costs from the min one upwards and picks
+ * the highest cost that fits the latency budget. Every next cost is twice as slow, so the measurement stops at the
+ * first cost that doesn't fit.
+ * <br/><br/>
+ * The measured median times are exposed as the "password.bcrypt.calibration.time" gauge tagged by the cost.
+ */
+@Component
+public class BcryptCostCalibrator implements MeterBinder {
+    /**
+     * BCrypt doesn't support lower costs.
+     */
+    private static final int MIN_SUPPORTED_STRENGTH = 4;
+
+    /**
+     * Password used for the measurements. It has a typical length.
+     */
+    private static final String SAMPLE_PASSWORD = "Calibration1!";
+
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Max median time of hashing.
+     */
+    private final Duration latencyBudget;
+
+    /**
+     * The lowest cost that can be picked.
+     */
+    private final int minStrength;
+
+    /**
+     * The highest cost that can be picked.
+     */
+    private final int maxStrength;
+
+    /**
+     * Number of measurements per cost.
+     */
+    private final int samples;
+
+    /**
+     * Measured median times in milliseconds by cost.
+     */
+    private final Map<Integer, Double> medianMillisByStrength = new ConcurrentSkipListMap<>();
+
+    public BcryptCostCalibrator(@Value("${password.bcrypt.calibration.latency-budget}") Duration latencyBudget,
+                                @Value("${password.bcrypt.calibration.min-strength}") int minStrength,
+                                @Value("${password.bcrypt.calibration.max-strength}") int maxStrength,
+                                @Value("${password.bcrypt.calibration.samples}") int samples) {
+        if (minStrength < MIN_SUPPORTED_STRENGTH || minStrength > maxStrength) {
+            throw new IllegalArgumentException("Incorrect range of BCrypt strength: %d..%d"
+                    .formatted(minStrength, maxStrength));
+        }
+        this.latencyBudget = latencyBudget;
+        this.minStrength = minStrength;
+        this.maxStrength = maxStrength;
+        this.samples = Math.max(samples, 1);
+    }
+
+    /**
+     * Measures hashing on the current machine and picks the cost.
+     * @return The highest cost whose median hashing time fits the latency budget, or the min cost if none fits.
+     */
+    public int calibrate() {
+        double budgetMillis = latencyBudget.toNanos() / 1_000_000.0;
+        // Warm up the JIT, so the first measured cost isn't penalized
+        BCrypt.hashpw(SAMPLE_PASSWORD, BCrypt.gensalt(MIN_SUPPORTED_STRENGTH));
+
+        int chosenStrength = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            double medianMillis = measureMedianMillis(strength);
+            medianMillisByStrength.put(strength, medianMillis);
+            logger.info("BCrypt cost %d: median hashing time %.1f ms".formatted(strength, medianMillis));
+            if (medianMillis > budgetMillis) {
+                break;
+            }
+            chosenStrength = strength;
+        }
+
+        if (medianMillisByStrength.get(chosenStrength) > budgetMillis) {
+            logger.warn("Even the min BCrypt cost %d doesn't fit the latency budget of %.1f ms"
+                    .formatted(chosenStrength, budgetMillis));
+        }
+        logger.info("BCrypt cost %d is chosen for the latency budget of %.1f ms"
+                .formatted(chosenStrength, budgetMillis));
+        return chosenStrength;
+    }
+
+    /**
+     * Measures the median time of hashing with the cost.
+     * @param strength Cost of hashing.
+     * @return Median time in milliseconds.
+     */
+    private double measureMedianMillis(int strength) {
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            String salt = BCrypt.gensalt(strength);
+            long start = System.nanoTime();
+            BCrypt.hashpw(SAMPLE_PASSWORD, salt);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[samples / 2] / 1_000_000.0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        medianMillisByStrength.forEach((strength, medianMillis) ->
+                Gauge.builder("password.bcrypt.calibration.time", () -> medianMillis)
+                        .description("Median BCrypt hashing time measured at startup")
+                        .tag("cost", String.valueOf(strength))
+                        .baseUnit("milliseconds")
+                        .register(registry));
+    }
+}
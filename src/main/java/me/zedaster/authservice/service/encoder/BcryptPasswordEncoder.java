@@ -1,22 +1,34 @@
 package me.zedaster.authservice.service.encoder;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mindrot.jbcrypt.BCrypt;
-import org.springframework.context.annotation.Primary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * BCrypt implementation of PasswordEncoder
  * <br/>
  * Code copied from org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder
+ * <br/>
+ * It hashes in the calling thread. Use {@link OffloadedPasswordEncoder} to hash in the dedicated executor.
+ * <br/>
+ * The cost is taken from the properties or picked by {@link BcryptCostCalibrator} at startup. It is exposed as the
+ * "password.bcrypt.strength" gauge. The time of hashing is recorded by the "password.bcrypt" timer tagged by the
+ * operation (encode or matches).
  */
 @Service
-@Primary
-public class BcryptPasswordEncoder implements PasswordEncoder {
+public class BcryptPasswordEncoder implements PasswordEncoder, MeterBinder {
 
     private final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2([ayb])?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
 
@@ -26,9 +38,31 @@ public class BcryptPasswordEncoder implements PasswordEncoder {
 
     private final SecureRandom random;
 
-    public BcryptPasswordEncoder() {
-        this.strength = 5;
+    /**
+     * Timer of hashing new passwords. It is no-op until the encoder is bound to the registry.
+     */
+    private Timer encodeTimer;
+
+    /**
+     * Timer of checking passwords. It is no-op until the encoder is bound to the registry.
+     */
+    private Timer matchesTimer;
+
+    public BcryptPasswordEncoder(int strength) {
+        if (strength < 4 || strength > 31) {
+            throw new IllegalArgumentException("Bad strength");
+        }
+        this.strength = strength;
         this.random = null;
+        // A composite registry without registries creates no-op meters
+        registerTimers(new CompositeMeterRegistry());
+    }
+
+    @Autowired
+    public BcryptPasswordEncoder(@Value("${password.bcrypt.strength}") int strength,
+                                 @Value("${password.bcrypt.calibration.enabled}") boolean calibrationEnabled,
+                                 BcryptCostCalibrator calibrator) {
+        this(calibrationEnabled ? calibrator.calibrate() : strength);
     }
 
     @Override
@@ -37,7 +71,7 @@ public class BcryptPasswordEncoder implements PasswordEncoder {
             throw new IllegalArgumentException("rawPassword cannot be null");
         }
         String salt = getSalt();
-        return BCrypt.hashpw(rawPassword.toString(), salt);
+        return encodeTimer.record(() -> BCrypt.hashpw(rawPassword.toString(), salt));
     }
 
     @Override
@@ -53,7 +87,61 @@ public class BcryptPasswordEncoder implements PasswordEncoder {
             this.logger.warn("Encoded password does not look like BCrypt");
             return false;
         }
-        return BCrypt.checkpw(rawPassword.toString(), encodedPassword);
+        return matchesTimer.record(() -> BCrypt.checkpw(rawPassword.toString(), encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            this.logger.warn("Empty encoded password");
+            return false;
+        }
+        Matcher matcher = this.BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            this.logger.warn("Encoded password does not look like BCrypt");
+            return false;
+        }
+        int strength = Integer.parseInt(matcher.group(2));
+        return strength < this.strength;
+    }
+
+    /**
+     * Returns the cost of the new hashes
+     * @return log2 of the number of rounds
+     */
+    public int getStrength() {
+        return this.strength;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("password.bcrypt.strength", () -> this.strength)
+                .description("Cost of the new BCrypt hashes")
+                .register(registry);
+        registerTimers(registry);
+    }
+
+    /**
+     * Creates the timers in the registry.
+     * @param registry Registry of the metrics.
+     */
+    private void registerTimers(MeterRegistry registry) {
+        encodeTimer = bcryptTimer(registry, "encode");
+        matchesTimer = bcryptTimer(registry, "matches");
+    }
+
+    /**
+     * Creates the timer of the operation.
+     * @param registry Registry of the metrics.
+     * @param operation Name of the operation.
+     * @return Timer.
+     */
+    private static Timer bcryptTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("password.bcrypt")
+                .description("Time of BCrypt hashing")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
     private String getSalt() {
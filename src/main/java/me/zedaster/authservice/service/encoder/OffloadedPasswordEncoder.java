@@ -0,0 +1,40 @@
+package me.zedaster.authservice.service.encoder;
+
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Password encoder that runs {@link BcryptPasswordEncoder} in {@link PasswordHashingExecutor} instead of the request
+ * thread.
+ */
+@Service
+@Primary
+@AllArgsConstructor
+public class OffloadedPasswordEncoder implements PasswordEncoder {
+    /**
+     * Encoder that does the hashing.
+     */
+    private final BcryptPasswordEncoder bcryptPasswordEncoder;
+
+    /**
+     * Executor for the hashing.
+     */
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordHashingExecutor.execute(() -> bcryptPasswordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return passwordHashingExecutor.execute(() -> bcryptPasswordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Parsing the hash is cheap, so it is done in the calling thread
+        return bcryptPasswordEncoder.upgradeEncoding(encodedPassword);
+    }
+}
@@ -19,4 +19,14 @@ public interface PasswordEncoder {
      * @return true if the password are the same
      */
     boolean matches(CharSequence rawPassword, String encodedPassword);
+
+    /**
+     * Checks if the encoded password should be encoded again for better security (e.g. it was encoded with a lower
+     * cost than the current one)
+     * @param encodedPassword The encoded password
+     * @return true if the password should be encoded again
+     */
+    default boolean upgradeEncoding(String encodedPassword) {
+        return false;
+    }
 }
@@ -0,0 +1,122 @@
+package me.zedaster.authservice.service.encoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import me.zedaster.authservice.exception.OverloadedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Executor for CPU-bound password hashing.
+ * <br/><br/>
+ * It has a thread per core and a bounded queue, so hashing can't take all the request threads during login storms.
+ * If the queue is full, the task is rejected with {@link OverloadedException} at once.
+ * <br/><br/>
+ * Metrics (prefix "password.hashing"):
+ * <ul>
+ *     <li>executor.queued - queue depth</li>
+ *     <li>executor.idle - time the tasks wait in the queue</li>
+ *     <li>executor - time of hashing itself</li>
+ *     <li>password.hashing.rejected - number of rejected tasks</li>
+ * </ul>
+ */
+@Component
+public class PasswordHashingExecutor {
+    /**
+     * Raw executor. It is used to read the state of the queue.
+     */
+    private final ThreadPoolExecutor threadPool;
+
+    /**
+     * Instrumented executor that is used to run the tasks.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Counter of the rejected tasks.
+     */
+    private final Counter rejectedCounter;
+
+    /**
+     * Seconds after which the client can retry the rejected request.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates the executor.
+     * @param threads Number of threads. If it is not positive, the number of available cores is used.
+     * @param queueCapacity Max number of tasks waiting for a thread.
+     * @param retryAfterSeconds Seconds after which the client can retry the rejected request.
+     * @param meterRegistry Registry of the metrics.
+     */
+    public PasswordHashingExecutor(@Value("${password.hashing.threads}") int threads,
+                                   @Value("${password.hashing.queue-capacity}") int queueCapacity,
+                                   @Value("${password.hashing.retry-after}") long retryAfterSeconds,
+                                   MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.threadPool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "passwordHashing",
+                "password.hashing");
+        this.rejectedCounter = meterRegistry.counter("password.hashing.rejected");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs the task in the executor and waits for its result.
+     * @param task Hashing task.
+     * @return Result of the task.
+     * @throws OverloadedException If the queue of the executor is full.
+     */
+    public <T> T execute(Supplier<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task::get);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new OverloadedException("Too many requests, try again later!", retryAfterSeconds);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue.
+     * @return Queue depth.
+     */
+    public int getQueueSize() {
+        return threadPool.getQueue().size();
+    }
+
+    /**
+     * Stops the executor. The tasks that haven't started yet are cancelled, so their callers don't wait forever.
+     */
+    @PreDestroy
+    public void shutdown() {
+        List<Runnable> notStarted = executor.shutdownNow();
+        for (Runnable task : notStarted) {
+            if (task instanceof Future<?> future) {
+                future.cancel(false);
+            }
+        }
+    }
+}
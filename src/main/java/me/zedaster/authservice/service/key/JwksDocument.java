@@ -0,0 +1,57 @@
+package me.zedaster.authservice.service.key;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import lombok.Getter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialized JSON Web Key Set of the public keys for verifying the access tokens. It's serialized once per loading of
+ * the keys.
+ */
+@Getter
+public class JwksDocument {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * JSON of the key set.
+     */
+    private final byte[] json;
+
+    /**
+     * Quoted entity tag of the JSON. It changes only when the keys are changed.
+     */
+    private final String etag;
+
+    /**
+     * @param keyRing Ring of the access token keys. Only its public keys are published.
+     */
+    public JwksDocument(KeyRing keyRing) {
+        List<PublicJwk<?>> keys = new ArrayList<>();
+        for (Map.Entry<String, PublicKey> entry : keyRing.getPublicKeys().entrySet()) {
+            keys.add(Jwks.builder()
+                    .key(entry.getValue())
+                    .id(entry.getKey())
+                    .algorithm(keyRing.getAlgorithm())
+                    .publicKeyUse("sig")
+                    .build());
+        }
+        try {
+            this.json = OBJECT_MAPPER.writeValueAsBytes(Map.of("keys", keys));
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            this.etag = "\"" + Encoders.BASE64URL.encode(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package me.zedaster.authservice.service.key;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import me.zedaster.authservice.service.cache.AccessTokenCache;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Key rings for signing and verifying JWT access and refresh tokens.
+ * <br/><br/>
+ * The keys are loaded from a properties file, which is reloaded without a restart when it's changed:
+ * <pre>
+ * access.current=2024-06
+ * access.keys.2024-06=&lt;Base64 secret&gt;
+ * access.keys.2024-01=&lt;Base64 secret&gt;
+ * refresh.current=2024-06
+ * refresh.keys.2024-06=&lt;Base64 secret&gt;
+ * </pre>
+ * To rotate a key, a new key is added and made current, and the previous key is kept until the tokens signed by it
+ * expire. The secrets {@code jwt.secret.access} and {@code jwt.secret.refresh} are added to the rings with the ID
+ * {@link #DEFAULT_KEY_ID}. It verifies the tokens without a key ID, and it is current if there is no file.
+ * <br/><br/>
+ * With {@code access.algorithm=RS256} or {@code access.algorithm=EdDSA} the access tokens are signed asymmetrically,
+ * so other services can verify them with the public keys from the JWKS. Then the keys are Base64 PKCS#8 private
+ * keys, and every key needs the Base64 X.509 public key. Previous keys need only the public one:
+ * <pre>
+ * access.algorithm=EdDSA
+ * access.current=2024-06
+ * access.keys.2024-06=&lt;Base64 private key&gt;
+ * access.public-keys.2024-06=&lt;Base64 public key&gt;
+ * access.public-keys.2024-01=&lt;Base64 public key&gt;
+ * </pre>
+ */
+@Component
+public class JwtKeyStore {
+    /**
+     * ID of the key from the secret. Tokens without a key ID are verified by it.
+     */
+    public static final String DEFAULT_KEY_ID = "default";
+
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Names of the key factory algorithms by the supported asymmetric signature algorithms.
+     */
+    private static final Map<String, String> KEY_ALGORITHMS = Map.of("RS256", "RSA", "EdDSA", "Ed25519");
+
+    /**
+     * Key from {@code jwt.secret.access} or null if it's not set.
+     */
+    private final SecretKey defaultAccessKey;
+
+    /**
+     * Key from {@code jwt.secret.refresh} or null if it's not set.
+     */
+    private final SecretKey defaultRefreshKey;
+
+    /**
+     * File with the keys or null if the keys are taken only from the secrets.
+     */
+    private final Path keysFile;
+
+    /**
+     * Cache of verified access tokens. It's cleared when the keys are changed, so tokens of removed keys are not
+     * accepted anymore.
+     */
+    private final AccessTokenCache accessTokenCache;
+
+    private volatile KeyRing accessKeys;
+
+    private volatile KeyRing refreshKeys;
+
+    private volatile JwksDocument jwks;
+
+    /**
+     * Modification time of the file when it was loaded last time.
+     */
+    private volatile long loadedModifiedTime;
+
+    @Autowired
+    public JwtKeyStore(@Value("${jwt.secret.access:}") String accessTokenSecret,
+                       @Value("${jwt.secret.refresh:}") String refreshTokenSecret,
+                       @Value("${jwt.keys.file:}") String keysFile,
+                       AccessTokenCache accessTokenCache) throws IOException {
+        this.defaultAccessKey = toSecretKey(accessTokenSecret);
+        this.defaultRefreshKey = toSecretKey(refreshTokenSecret);
+        this.keysFile = keysFile.isEmpty() ? null : Path.of(keysFile);
+        this.accessTokenCache = accessTokenCache;
+        if (this.keysFile == null) {
+            this.accessKeys = newDefaultKeyRing(defaultAccessKey, "jwt.secret.access");
+            this.refreshKeys = newDefaultKeyRing(defaultRefreshKey, "jwt.secret.refresh");
+            this.jwks = new JwksDocument(accessKeys);
+        } else {
+            load();
+        }
+    }
+
+    /**
+     * Creates the key store with the keys only from the secrets.
+     * @param accessTokenSecret Base64 secret of the access tokens.
+     * @param refreshTokenSecret Base64 secret of the refresh tokens.
+     * @param accessTokenCache Cache of verified access tokens.
+     * @return Key store.
+     */
+    public static JwtKeyStore fromSecrets(String accessTokenSecret, String refreshTokenSecret,
+                                          AccessTokenCache accessTokenCache) {
+        try {
+            return new JwtKeyStore(accessTokenSecret, refreshTokenSecret, "", accessTokenCache);
+        } catch (IOException e) {
+            // There is no file to read
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public KeyRing getAccessKeys() {
+        return accessKeys;
+    }
+
+    public KeyRing getRefreshKeys() {
+        return refreshKeys;
+    }
+
+    /**
+     * Returns the key set of the public keys for verifying the access tokens. It's empty for HMAC keys.
+     * @return Serialized key set.
+     */
+    public JwksDocument getJwks() {
+        return jwks;
+    }
+
+    /**
+     * Reloads the keys if the file was changed. If the new file is invalid, the previous keys are kept.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.reload-interval}", initialDelayString = "${jwt.keys.reload-interval}")
+    public void reloadIfChanged() {
+        if (keysFile == null) {
+            return;
+        }
+        try {
+            if (Files.getLastModifiedTime(keysFile).toMillis() != loadedModifiedTime) {
+                load();
+                logger.info("JWT keys are reloaded from %s".formatted(keysFile));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to reload JWT keys from %s, the previous keys are kept".formatted(keysFile), e);
+        }
+    }
+
+    /**
+     * Loads the keys from the file.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If the file is invalid.
+     */
+    private synchronized void load() throws IOException {
+        long modifiedTime = Files.getLastModifiedTime(keysFile).toMillis();
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(keysFile)) {
+            properties.load(reader);
+        }
+
+        KeyRing newAccessKeys = readKeyRing(properties, "access", defaultAccessKey);
+        KeyRing newRefreshKeys = readKeyRing(properties, "refresh", defaultRefreshKey);
+        boolean accessKeysChanged = accessKeys != null
+                && !accessKeys.getVerificationKeys().equals(newAccessKeys.getVerificationKeys());
+        accessKeys = newAccessKeys;
+        refreshKeys = newRefreshKeys;
+        jwks = new JwksDocument(newAccessKeys);
+        loadedModifiedTime = modifiedTime;
+        if (accessKeysChanged) {
+            accessTokenCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Reads the key ring of one token type from the properties.
+     * @param properties Properties of the file.
+     * @param prefix Type of the tokens ("access" or "refresh").
+     * @param defaultKey Key from the secret or null.
+     * @return Key ring.
+     * @throws IllegalArgumentException If there is no current key, a key is invalid or the algorithm is unsupported.
+     */
+    private static KeyRing readKeyRing(Properties properties, String prefix, SecretKey defaultKey) {
+        Map<String, Key> keys = new HashMap<>();
+        if (defaultKey != null) {
+            // HMAC tokens without a key ID stay valid after switching to an asymmetric algorithm
+            keys.put(DEFAULT_KEY_ID, defaultKey);
+        }
+        String currentKeyId = properties.getProperty(prefix + ".current", DEFAULT_KEY_ID).trim();
+        String algorithm = properties.getProperty(prefix + ".algorithm");
+        if (algorithm == null || algorithm.trim().startsWith("HS")) {
+            readProperties(properties, prefix + ".keys.").forEach((keyId, secret) -> keys.put(keyId, toSecretKey(secret)));
+            return KeyRing.ofSecretKeys(currentKeyId, keys);
+        }
+
+        algorithm = algorithm.trim();
+        String keyAlgorithm = KEY_ALGORITHMS.get(algorithm);
+        if (keyAlgorithm == null) {
+            throw new IllegalArgumentException("The algorithm %s is not supported!".formatted(algorithm));
+        }
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+            for (Map.Entry<String, String> entry : readProperties(properties, prefix + ".public-keys.").entrySet()) {
+                byte[] encoded = Decoders.BASE64.decode(entry.getValue());
+                keys.put(entry.getKey(), keyFactory.generatePublic(new X509EncodedKeySpec(encoded)));
+            }
+            String privateKey = properties.getProperty(prefix + ".keys." + currentKeyId);
+            if (privateKey == null) {
+                throw new IllegalArgumentException("There is no private key '%s'!".formatted(currentKeyId));
+            }
+            byte[] encoded = Decoders.BASE64.decode(privateKey.trim());
+            PrivateKey signingKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(encoded));
+            return new KeyRing(algorithm, currentKeyId, signingKey, keys);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("The %s keys are invalid!".formatted(prefix), e);
+        }
+    }
+
+    /**
+     * Reads the properties with the given prefix.
+     * @param properties Properties of the file.
+     * @param prefix Prefix of the names.
+     * @return Trimmed values by the rest of the names.
+     */
+    private static Map<String, String> readProperties(Properties properties, String prefix) {
+        Map<String, String> result = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                result.put(name.substring(prefix.length()), properties.getProperty(name).trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the key ring with only the key from the secret.
+     * @param defaultKey Key from the secret.
+     * @param property Name of the property with the secret.
+     * @return Key ring.
+     */
+    private static KeyRing newDefaultKeyRing(SecretKey defaultKey, String property) {
+        if (defaultKey == null) {
+            throw new IllegalStateException("Either %s or jwt.keys.file must be set!".formatted(property));
+        }
+        return KeyRing.ofSecretKeys(DEFAULT_KEY_ID, Map.of(DEFAULT_KEY_ID, defaultKey));
+    }
+
+    /**
+     * Transform a secret string to a secret key.
+     * @param secret Base64 secret string.
+     * @return Secret key or null if the secret is empty.
+     */
+    private static SecretKey toSecretKey(String secret) {
+        if (secret == null || secret.isBlank()) {
+            return null;
+        }
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret.trim()));
+    }
+}
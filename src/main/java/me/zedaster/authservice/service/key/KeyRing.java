@@ -0,0 +1,106 @@
+package me.zedaster.authservice.service.key;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of keys by their IDs. New tokens are signed with the current key, and tokens signed with any key of
+ * the ring can be verified.
+ * <br/>
+ * For HMAC the same secret key signs and verifies the tokens. For RS256 and EdDSA the tokens are signed with the
+ * private key, and they are verified with the public keys, which can be published.
+ */
+public class KeyRing {
+    /**
+     * Name of the signature algorithm, or null if it's chosen by the HMAC key.
+     */
+    private final String algorithm;
+
+    /**
+     * ID of the key for signing new tokens.
+     */
+    private final String currentKeyId;
+
+    /**
+     * Key for signing new tokens.
+     */
+    private final Key signingKey;
+
+    /**
+     * Keys for verifying tokens by their IDs, including the current one.
+     */
+    private final Map<String, Key> verificationKeys;
+
+    /**
+     * @param algorithm Name of the signature algorithm, or null if it's chosen by the HMAC key.
+     * @param currentKeyId ID of the key for signing new tokens.
+     * @param signingKey Key for signing new tokens.
+     * @param verificationKeys Keys for verifying tokens by their IDs.
+     * @throws IllegalArgumentException If there is no verification key with the current ID.
+     */
+    public KeyRing(String algorithm, String currentKeyId, Key signingKey, Map<String, Key> verificationKeys) {
+        if (signingKey == null || !verificationKeys.containsKey(currentKeyId)) {
+            throw new IllegalArgumentException("There is no current key '%s' in the ring!".formatted(currentKeyId));
+        }
+        this.algorithm = algorithm;
+        this.currentKeyId = currentKeyId;
+        this.signingKey = signingKey;
+        this.verificationKeys = Map.copyOf(verificationKeys);
+    }
+
+    /**
+     * Creates the ring of HMAC secret keys.
+     * @param currentKeyId ID of the key for signing new tokens.
+     * @param keys Secret keys by their IDs.
+     * @return Key ring.
+     * @throws IllegalArgumentException If there is no key with the current ID.
+     */
+    public static KeyRing ofSecretKeys(String currentKeyId, Map<String, ? extends Key> keys) {
+        return new KeyRing(null, currentKeyId, keys.get(currentKeyId), Map.copyOf(keys));
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getCurrentKeyId() {
+        return currentKeyId;
+    }
+
+    public Key getSigningKey() {
+        return signingKey;
+    }
+
+    /**
+     * Finds the verification key by its ID.
+     * @param keyId ID of the key.
+     * @return Key or null if there is no such key in the ring.
+     */
+    public Key getVerificationKey(String keyId) {
+        return keyId == null ? null : verificationKeys.get(keyId);
+    }
+
+    /**
+     * Returns all verification keys of the ring.
+     * @return Keys by their IDs.
+     */
+    public Map<String, Key> getVerificationKeys() {
+        return verificationKeys;
+    }
+
+    /**
+     * Returns the verification keys that can be published.
+     * @return Public keys by their IDs. It's empty for HMAC.
+     */
+    public Map<String, PublicKey> getPublicKeys() {
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        verificationKeys.forEach((keyId, key) -> {
+            if (key instanceof PublicKey publicKey) {
+                publicKeys.put(keyId, publicKey);
+            }
+        });
+        return publicKeys;
+    }
+}
@@ -0,0 +1,331 @@
+package me.zedaster.authservice.service.migration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import me.zedaster.authservice.dto.migration.ImportProblemDto;
+import me.zedaster.authservice.dto.migration.ImportReportDto;
+import me.zedaster.authservice.dto.migration.ImportedUserDto;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.model.ImportProblemType;
+import me.zedaster.authservice.model.Role;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service for importing users from another system.
+ * <br/><br/>
+ * The users are read from NDJSON (one {@link ImportedUserDto} per line) and written in batches by plain JDBC: one
+ * transaction, one duplicate check and one batched insert per {@link #batchSize} lines, so only one batch is in memory.
+ * The passwords are already hashed, so no hashing is done. Lines that are not valid or have a username or email that
+ * is already taken are reported and skipped without stopping the import.
+ * <br/><br/>
+ * The IDs are reserved from the same sequence and with the same block size as the IDs of {@link UserEntity}, so the
+ * import may run while users are registered.
+ */
+@Service
+public class UserImportService {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Validator validator;
+
+    /**
+     * Reader of one line of the import file.
+     */
+    private final ObjectReader userReader;
+
+    /**
+     * Query that returns the next value of the sequence of the user IDs.
+     */
+    private final String nextIdBlockSql;
+
+    /**
+     * Number of IDs reserved by one value of the sequence.
+     */
+    private final int idBlockSize;
+
+    /**
+     * Number of lines written in one transaction.
+     */
+    private final int batchSize;
+
+    /**
+     * Number of lines between the progress messages in the log.
+     */
+    private final long progressInterval;
+
+    /**
+     * Max number of lines listed in {@link ImportReportDto#getProblems()}.
+     */
+    private final int maxReportedProblems;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             EntityManagerFactory entityManagerFactory,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${user-import.batch-size}") int batchSize,
+                             @Value("${user-import.progress-interval}") long progressInterval,
+                             @Value("${user-import.max-reported-problems}") int maxReportedProblems) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.userReader = objectMapper.readerFor(ImportedUserDto.class);
+        this.batchSize = batchSize;
+        this.progressInterval = progressInterval;
+        this.maxReportedProblems = maxReportedProblems;
+
+        // The block size and the SQL are taken from Hibernate, so the blocks never overlap with the ones it reserves
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        SequenceStyleGenerator idGenerator = (SequenceStyleGenerator) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(UserEntity.class)
+                .getGenerator();
+        this.idBlockSize = idGenerator.getDatabaseStructure().getIncrementSize();
+        this.nextIdBlockSql = sessionFactory.getJdbcServices().getDialect().getSequenceSupport()
+                .getSequenceNextValString(UserEntity.ID_SEQUENCE);
+    }
+
+    /**
+     * Imports users.
+     * @param ndjson Reader of the file with one JSON object in the format of {@link ImportedUserDto} per line. Empty
+     *               lines are skipped.
+     * @return Report of the import.
+     * @throws IOException If the file can't be read. The users of the previous batches stay imported.
+     */
+    public ImportReportDto importUsers(Reader ndjson) throws IOException {
+        Import currentImport = new Import();
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        BufferedReader reader = new BufferedReader(ndjson);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            ImportedUserDto user = parse(lineNumber, line, currentImport);
+            if (user == null) {
+                continue;
+            }
+            batch.add(new ImportRow(lineNumber, user));
+            if (batch.size() == batchSize) {
+                writeBatch(batch, currentImport);
+                batch.clear();
+                logProgress(lineNumber, currentImport);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, currentImport);
+        }
+
+        logger.info("Import is finished: %d lines, %d users imported, %d duplicates, %d invalid"
+                .formatted(lineNumber, currentImport.imported, currentImport.duplicates, currentImport.invalid));
+        return new ImportReportDto(currentImport.imported, currentImport.duplicates, currentImport.invalid,
+                currentImport.problems);
+    }
+
+    /**
+     * Parses and validates one line.
+     * @return The user or null if the line is not valid.
+     */
+    private ImportedUserDto parse(long lineNumber, String line, Import currentImport) {
+        ImportedUserDto user;
+        try {
+            user = userReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            currentImport.reportInvalid(lineNumber, "Malformed line: " + e.getOriginalMessage());
+            return null;
+        }
+
+        Set<ConstraintViolation<ImportedUserDto>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(" "));
+            currentImport.reportInvalid(lineNumber, message);
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Writes the users of the batch that don't have a taken username or email.
+     */
+    private void writeBatch(List<ImportRow> batch, Import currentImport) {
+        List<ImportRow> newRows = skipDuplicates(batch, currentImport);
+        if (newRows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(newRows, currentImport));
+            currentImport.imported += newRows.size();
+        } catch (DuplicateKeyException e) {
+            // A user with the same username or email is registered after the check. Only that row must be skipped
+            for (ImportRow row : newRows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(row), currentImport));
+                    currentImport.imported++;
+                } catch (DuplicateKeyException rowException) {
+                    currentImport.reportDuplicate(row.lineNumber(), "Username or email is already taken!");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports the rows with a username or email that is taken by an earlier row of the batch or by a user in the
+     * database. (Earlier batches are already in the database.)
+     * @return Rows that can be inserted.
+     */
+    private List<ImportRow> skipDuplicates(List<ImportRow> batch, Import currentImport) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (ImportRow row : batch) {
+            usernames.add(row.user().getUsername());
+            emails.add(row.user().getEmail());
+        }
+        Set<String> takenUsernames = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        namedParameterJdbcTemplate.query(
+                "SELECT username, email FROM users WHERE username IN (:usernames) OR email IN (:emails)",
+                Map.of("usernames", usernames, "emails", emails),
+                resultSet -> {
+                    takenUsernames.add(resultSet.getString("username"));
+                    takenEmails.add(resultSet.getString("email"));
+                });
+
+        List<ImportRow> newRows = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            ImportedUserDto user = row.user();
+            if (takenUsernames.contains(user.getUsername())) {
+                currentImport.reportDuplicate(row.lineNumber(), "Username is already taken!");
+            } else if (takenEmails.contains(user.getEmail())) {
+                currentImport.reportDuplicate(row.lineNumber(), "Email is already taken!");
+            } else {
+                takenUsernames.add(user.getUsername());
+                takenEmails.add(user.getEmail());
+                newRows.add(row);
+            }
+        }
+        return newRows;
+    }
+
+    /**
+     * Inserts the users and their roles by two batched statements.
+     */
+    private void insert(List<ImportRow> rows, Import currentImport) {
+        long[] ids = new long[rows.size()];
+        List<Object[]> userArgs = new ArrayList<>(rows.size());
+        List<Object[]> roleArgs = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            ImportedUserDto user = rows.get(i).user();
+            ids[i] = currentImport.nextId();
+            userArgs.add(new Object[]{ids[i], user.getUsername(), user.getEmail(), user.getPassword()});
+            if (user.getRole() != null && user.getRole() != Role.USER) {
+                roleArgs.add(new Object[]{ids[i], user.getRole().getId()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, username, email, password) VALUES (?, ?, ?, ?)", userArgs);
+        if (!roleArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role) VALUES (?, ?)", roleArgs);
+        }
+    }
+
+    private void logProgress(long lineNumber, Import currentImport) {
+        long processed = currentImport.imported + currentImport.duplicates + currentImport.invalid;
+        if (processed / progressInterval != currentImport.lastProgress / progressInterval) {
+            logger.info("Import progress: %d lines, %d users imported, %d duplicates, %d invalid"
+                    .formatted(lineNumber, currentImport.imported, currentImport.duplicates, currentImport.invalid));
+        }
+        currentImport.lastProgress = processed;
+    }
+
+    /**
+     * Line of the file with a valid user.
+     */
+    private record ImportRow(long lineNumber, ImportedUserDto user) {
+    }
+
+    /**
+     * State of one import.
+     */
+    private class Import {
+        private long imported;
+
+        private long duplicates;
+
+        private long invalid;
+
+        private long lastProgress;
+
+        private final List<ImportProblemDto> problems = new ArrayList<>();
+
+        /**
+         * Next ID of the reserved block.
+         */
+        private long nextId;
+
+        /**
+         * Number of IDs left in the reserved block.
+         */
+        private int idsLeft;
+
+        private long nextId() {
+            if (idsLeft == 0) {
+                // Pooled-lo: the value of the sequence is the first ID of the block
+                nextId = jdbcTemplate.queryForObject(nextIdBlockSql, Long.class);
+                idsLeft = idBlockSize;
+            }
+            idsLeft--;
+            return nextId++;
+        }
+
+        private void reportInvalid(long lineNumber, String message) {
+            invalid++;
+            report(lineNumber, ImportProblemType.INVALID, message);
+        }
+
+        private void reportDuplicate(long lineNumber, String message) {
+            duplicates++;
+            report(lineNumber, ImportProblemType.DUPLICATE, message);
+        }
+
+        private void report(long lineNumber, ImportProblemType type, String message) {
+            if (problems.size() < maxReportedProblems) {
+                problems.add(new ImportProblemDto(lineNumber, type, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package me.zedaster.authservice.service.throttle;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import me.zedaster.authservice.exception.TooManyAttemptsException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttle of login attempts by the username or email and by the IP of the client.
+ * <br/><br/>
+ * Every login attempt checks a password hash, so the attempts are limited before the user is looked up. A rejected
+ * attempt costs a few cache lookups instead of a BCrypt computation.
+ * <br/><br/>
+ * Metrics:
+ * <ul>
+ *     <li>login.throttle.rejected - number of rejected attempts, tagged by the limit (account or ip)</li>
+ * </ul>
+ */
+@Service
+public class LoginThrottle implements MeterBinder {
+    /**
+     * Buckets of attempts by the normalized usernames and emails.
+     */
+    private final TokenBucketLimiter accountLimiter;
+
+    /**
+     * Buckets of attempts by the IPs of the clients.
+     */
+    private final TokenBucketLimiter ipLimiter;
+
+    /**
+     * Number of attempts rejected by the account limit.
+     */
+    private final LongAdder accountRejectedCount = new LongAdder();
+
+    /**
+     * Number of attempts rejected by the IP limit.
+     */
+    private final LongAdder ipRejectedCount = new LongAdder();
+
+    @Autowired
+    public LoginThrottle(@Value("${login.throttle.account.capacity}") int accountCapacity,
+                         @Value("${login.throttle.account.refill-interval}") Duration accountRefillInterval,
+                         @Value("${login.throttle.ip.capacity}") int ipCapacity,
+                         @Value("${login.throttle.ip.refill-interval}") Duration ipRefillInterval,
+                         @Value("${login.throttle.max-keys}") long maxKeys) {
+        this(new TokenBucketLimiter(accountCapacity, accountRefillInterval, maxKeys, Ticker.systemTicker()),
+                new TokenBucketLimiter(ipCapacity, ipRefillInterval, maxKeys, Ticker.systemTicker()));
+    }
+
+    LoginThrottle(TokenBucketLimiter accountLimiter, TokenBucketLimiter ipLimiter) {
+        this.accountLimiter = accountLimiter;
+        this.ipLimiter = ipLimiter;
+    }
+
+    /**
+     * Takes a login attempt of the account from the IP.
+     * @param usernameOrEmail Username or email from the credentials.
+     * @param clientIp IP of the client.
+     * @throws TooManyAttemptsException If the account or the IP has no attempts left.
+     */
+    public void acquire(String usernameOrEmail, String clientIp) {
+        long waitNanos = ipLimiter.tryAcquire(clientIp);
+        if (waitNanos > 0) {
+            ipRejectedCount.increment();
+            throw newTooManyAttemptsException(waitNanos);
+        }
+
+        waitNanos = accountLimiter.tryAcquire(usernameOrEmail.trim().toLowerCase(Locale.ROOT));
+        if (waitNanos > 0) {
+            accountRejectedCount.increment();
+            throw newTooManyAttemptsException(waitNanos);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("login.throttle.rejected", accountRejectedCount, LongAdder::sum)
+                .description("Number of rejected login attempts")
+                .tag("limit", "account")
+                .register(registry);
+        FunctionCounter.builder("login.throttle.rejected", ipRejectedCount, LongAdder::sum)
+                .description("Number of rejected login attempts")
+                .tag("limit", "ip")
+                .register(registry);
+    }
+
+    /**
+     * Creates the exception of a rejected attempt.
+     * @param waitNanos Time in nanoseconds until the next attempt.
+     * @return Exception with the time in seconds (rounded up) until the next attempt.
+     */
+    private static TooManyAttemptsException newTooManyAttemptsException(long waitNanos) {
+        long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+        long retryAfterSeconds = (waitNanos + nanosPerSecond - 1) / nanosPerSecond;
+        return new TooManyAttemptsException("Too many login attempts, try again later!", retryAfterSeconds);
+    }
+}
@@ -0,0 +1,94 @@
+package me.zedaster.authservice.service.throttle;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Token buckets by keys. Every key can take {@code capacity} attempts at once and regains one attempt per refill
+ * interval.
+ * <br/><br/>
+ * A bucket is a single {@link AtomicLong} with the time when it becomes full again (the generic cell rate algorithm),
+ * so an attempt is one compare-and-set without locks. The buckets are kept in a bounded cache. A bucket that isn't used
+ * for {@code capacity} refill intervals is full again, so it expires without changing the limits.
+ */
+public class TokenBucketLimiter {
+    /**
+     * Creates the bucket of a new key. It is full, because its time is before any time of the ticker.
+     */
+    private static final Function<String, AtomicLong> NEW_BUCKET = key -> new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Time in nanoseconds to regain one attempt.
+     */
+    private final long refillIntervalNanos;
+
+    /**
+     * How far in nanoseconds the time of a bucket may be ahead of now while it still has an attempt.
+     */
+    private final long burstToleranceNanos;
+
+    /**
+     * Source of the time.
+     */
+    private final Ticker ticker;
+
+    /**
+     * Buckets by keys.
+     */
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * Creates the limiter.
+     * @param capacity Max number of attempts at once.
+     * @param refillInterval Time to regain one attempt.
+     * @param maxKeys Max number of remembered keys.
+     * @param ticker Source of the time.
+     */
+    public TokenBucketLimiter(int capacity, Duration refillInterval, long maxKeys, Ticker ticker) {
+        if (capacity < 1 || refillInterval.isNegative() || refillInterval.isZero()) {
+            throw new IllegalArgumentException("The capacity and the refill interval must be positive!");
+        }
+        this.refillIntervalNanos = refillInterval.toNanos();
+        this.burstToleranceNanos = (capacity - 1) * refillIntervalNanos;
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(refillInterval.multipliedBy(capacity))
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Takes an attempt from the bucket of the key.
+     * @param key Key of the bucket.
+     * @return 0 if the attempt is taken, otherwise the time in nanoseconds until the next attempt.
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key, NEW_BUCKET);
+        long now = ticker.read();
+        while (true) {
+            long fullTime = bucket.get();
+            long start = Math.max(fullTime, now);
+            long waitNanos = start - now - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullTime, start + refillIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of remembered keys.
+     * @return Approximate number of keys.
+     */
+    public long size() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,248 @@
+package me.zedaster.authservice.service.token;
+
+import jakarta.annotation.PostConstruct;
+import me.zedaster.authservice.entity.RevokedAccessTokenEntity;
+import me.zedaster.authservice.repository.RevokedAccessTokenRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * List of the access tokens revoked before their expiration, keyed by their IDs ("jti" claims).
+ * <br/><br/>
+ * The check is on the path of every token verification, so it never reaches the database. A Bloom filter answers
+ * "not revoked" for almost all tokens with one probe and no allocation. Only the tokens that pass the filter are
+ * looked up in the exact set.
+ * <br/><br/>
+ * Revocations are stored in the database and loaded at startup. Then only the revocations made since the last sync
+ * are loaded periodically, so revocations made by other instances are applied after the sync interval. Revocations of
+ * expired tokens are dropped from memory by the sync and from the database by a separate purge job. The filter is
+ * rebuilt when revocations are dropped, because a Bloom filter can't forget.
+ * <br/><br/>
+ * The database is never accessed under the lock that the revocations of the requests take.
+ */
+@Service
+public class AccessTokenRevocationList {
+    /**
+     * Probability that the filter lets a token that is not revoked through to the exact set.
+     */
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Overlap of the synced periods. It covers the clocks of the instances that differ a bit and the revocations that
+     * are committed a bit later than their time.
+     */
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Repository for storing revoked access tokens.
+     */
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+
+    /**
+     * Expected number of revoked tokens that are not expired yet. The filter is sized for it.
+     */
+    private final int expectedSize;
+
+    /**
+     * Max number of expired revocations deleted by one statement.
+     */
+    private final int purgeBatchSize;
+
+    /**
+     * Expiration times in milliseconds of the revoked tokens by their IDs.
+     */
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    /**
+     * Filter of the IDs of the revoked tokens. It is replaced as a whole when it's rebuilt.
+     */
+    private volatile BloomFilter filter;
+
+    /**
+     * Number of tokens the current filter is sized for.
+     */
+    private volatile int filterCapacity;
+
+    /**
+     * IDs of the tokens revoked while the new filter is built, so they are added to it before it's used. It's null
+     * when the filter is not being rebuilt. Guarded by this.
+     */
+    private List<String> revokedDuringRebuild;
+
+    /**
+     * Time of the last sync. Only the sync job changes it.
+     */
+    private Instant lastSyncTime;
+
+    public AccessTokenRevocationList(RevokedAccessTokenRepository revokedAccessTokenRepository,
+                                     @Value("${jwt.revocation.expected-size}") int expectedSize,
+                                     @Value("${jwt.revocation.purge.batch-size}") int purgeBatchSize) {
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        this.expectedSize = expectedSize;
+        this.purgeBatchSize = purgeBatchSize;
+        this.filter = new BloomFilter(expectedSize, FALSE_POSITIVE_RATE);
+        this.filterCapacity = expectedSize;
+    }
+
+    /**
+     * Loads the revocations of the tokens that are not expired yet from the database.
+     */
+    @PostConstruct
+    public void load() {
+        Instant now = Instant.now();
+        for (RevokedAccessTokenEntity entity : revokedAccessTokenRepository.findAllByExpiresAtAfter(now)) {
+            add(entity.getId().toString(), entity.getExpiresAt().toEpochMilli());
+        }
+        lastSyncTime = now;
+        rebuildFilterIfFull();
+    }
+
+    /**
+     * Checks if the token is revoked.
+     * @param tokenId ID of the token. Tokens without ID can't be revoked.
+     * @return True if the token is revoked.
+     */
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && filter.mightContain(tokenId) && revokedTokens.containsKey(tokenId);
+    }
+
+    /**
+     * Revokes the token until its expiration. Revoking a token that is already revoked succeeds too.
+     * @param tokenId ID of the token.
+     * @param expiration Expiration time of the token in milliseconds since the epoch.
+     * @throws IllegalArgumentException If the ID is not a UUID.
+     */
+    public void revoke(String tokenId, long expiration) {
+        try {
+            revokedAccessTokenRepository.save(new RevokedAccessTokenEntity(UUID.fromString(tokenId),
+                    Instant.ofEpochMilli(expiration), Instant.now()));
+        } catch (DataIntegrityViolationException e) {
+            // The same token was revoked by a concurrent request, e.g. a repeated logout
+            logger.debug("Access token " + tokenId + " is already revoked");
+        }
+        add(tokenId, expiration);
+    }
+
+    /**
+     * Loads the revocations made since the last sync (including ones of other instances) and drops the revocations of
+     * expired tokens. If the database is unavailable, the current revocations are kept.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval}",
+            initialDelayString = "${jwt.revocation.sync-interval}")
+    public void sync() {
+        Instant now = Instant.now();
+        List<RevokedAccessTokenEntity> entities;
+        try {
+            entities = revokedAccessTokenRepository.findAllByRevokedAtAfter(lastSyncTime.minus(SYNC_OVERLAP));
+        } catch (RuntimeException e) {
+            logger.error("Failed to load revoked access tokens, the current ones are kept", e);
+            return;
+        }
+        for (RevokedAccessTokenEntity entity : entities) {
+            add(entity.getId().toString(), entity.getExpiresAt().toEpochMilli());
+        }
+        lastSyncTime = now;
+
+        if (dropExpired(now.toEpochMilli()) > 0) {
+            rebuildFilter();
+        } else {
+            rebuildFilterIfFull();
+        }
+    }
+
+    /**
+     * Deletes the revocations of expired tokens from the database in batches. The instances may run it at the same
+     * time, the deletes don't conflict.
+     * @return Number of deleted revocations.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge.interval}",
+            initialDelayString = "${jwt.revocation.purge.interval}")
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        int deletedCount = 0;
+        int batchCount;
+        do {
+            batchCount = revokedAccessTokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            deletedCount += batchCount;
+        } while (batchCount == purgeBatchSize);
+
+        if (deletedCount > 0) {
+            logger.info("%d revocations of expired access tokens are purged".formatted(deletedCount));
+        }
+        return deletedCount;
+    }
+
+    /**
+     * Adds the revocation to the set and the filter.
+     * @param tokenId ID of the token.
+     * @param expiration Expiration time of the token in milliseconds since the epoch.
+     */
+    private synchronized void add(String tokenId, long expiration) {
+        // The set is updated first, so a token found by the filter is always in the set
+        revokedTokens.put(tokenId, expiration);
+        filter.put(tokenId);
+        if (revokedDuringRebuild != null) {
+            revokedDuringRebuild.add(tokenId);
+        }
+    }
+
+    /**
+     * Drops the revocations of the expired tokens from the set. They stay in the filter until it's rebuilt.
+     * @param nowMillis Current time in milliseconds since the epoch.
+     * @return Number of dropped revocations.
+     */
+    private int dropExpired(long nowMillis) {
+        int droppedCount = 0;
+        Iterator<Long> iterator = revokedTokens.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= nowMillis) {
+                iterator.remove();
+                droppedCount++;
+            }
+        }
+        return droppedCount;
+    }
+
+    /**
+     * Rebuilds the filter if there are more revocations than it's sized for.
+     */
+    private void rebuildFilterIfFull() {
+        if (revokedTokens.size() > filterCapacity) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Builds a new filter of the revocations in the set and replaces the current one. The new filter is built outside
+     * the lock, and the tokens revoked in the meantime are added to it when it's swapped.
+     */
+    private void rebuildFilter() {
+        synchronized (this) {
+            revokedDuringRebuild = new ArrayList<>();
+        }
+        int capacity = Math.max(expectedSize, revokedTokens.size());
+        BloomFilter newFilter = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+        revokedTokens.keySet().forEach(newFilter::put);
+        synchronized (this) {
+            revokedDuringRebuild.forEach(newFilter::put);
+            revokedDuringRebuild = null;
+            filter = newFilter;
+            filterCapacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package me.zedaster.authservice.service.token;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings. It answers "definitely absent" or "maybe present" without storing the strings.
+ * <br/>
+ * Probes don't allocate: the hashes are derived from the hash code of the string, and the bits are read from a shared
+ * array. The filter is thread-safe.
+ */
+final class BloomFilter {
+    /**
+     * Bits of the filter in 64-bit words.
+     */
+    private final AtomicLongArray words;
+
+    /**
+     * Mask of the index of a bit. The number of bits is a power of 2, so a bit is picked without a division.
+     */
+    private final long bitMask;
+
+    /**
+     * Number of bits set for every string.
+     */
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter.
+     * @param expectedInsertions Expected number of strings in the filter.
+     * @param falsePositiveRate Desired probability of "maybe present" for an absent string.
+     */
+    BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int insertions = Math.max(expectedInsertions, 1);
+        long optimalBitCount = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int optimalWordCount = (int) Math.max((optimalBitCount + 63) / 64, 1);
+        int wordCount = Integer.highestOneBit(optimalWordCount) == optimalWordCount
+                ? optimalWordCount
+                : Integer.highestOneBit(optimalWordCount) << 1;
+        this.words = new AtomicLongArray(wordCount);
+        this.bitMask = wordCount * 64L - 1;
+        // Extra bits lower the false positive rate, so the number of hashes is chosen for the wanted size
+        this.hashCount = Math.max((int) Math.round((double) optimalBitCount / insertions * Math.log(2)), 1);
+    }
+
+    /**
+     * Adds the string to the filter.
+     * @param value String.
+     */
+    void put(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = bitIndex(hash1 + i * hash2);
+            int wordIndex = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(wordIndex);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(wordIndex, word, word | mask));
+        }
+    }
+
+    /**
+     * Checks if the string may be in the filter.
+     * @param value String.
+     * @return False if the string was definitely not added, true if it may have been added.
+     */
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = bitIndex(hash1 + i * hash2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a combined hash to a bit of the filter.
+     * @param combinedHash Combined hash (may be negative).
+     * @return Index of the bit.
+     */
+    private long bitIndex(int combinedHash) {
+        return combinedHash & bitMask;
+    }
+
+    /**
+     * Computes a 64-bit hash of the string. It is spread from the hash code of the string (MurmurHash3 finalizer), and
+     * the hash code is cached by the string, so probing the same token again doesn't hash its characters.
+     * @param value String.
+     * @return Hash of the string.
+     */
+    private static long hash(String value) {
+        long hash = value.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
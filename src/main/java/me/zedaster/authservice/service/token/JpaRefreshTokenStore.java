@@ -0,0 +1,105 @@
+package me.zedaster.authservice.service.token;
+
+import me.zedaster.authservice.entity.RefreshTokenEntity;
+import me.zedaster.authservice.entity.UsedLegacyRefreshTokenEntity;
+import me.zedaster.authservice.repository.RefreshTokenRepository;
+import me.zedaster.authservice.repository.UsedLegacyRefreshTokenRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Store of the refresh tokens in the database.
+ * <br/><br/>
+ * A refresh costs one delete by the primary key. Expired tokens are deleted in batches by a background job, every batch
+ * in its own short transaction.
+ */
+@Service
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Repository for storing refresh tokens.
+     */
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    /**
+     * Repository for storing used refresh tokens issued before the rotation.
+     */
+    private final UsedLegacyRefreshTokenRepository usedLegacyRefreshTokenRepository;
+
+    /**
+     * Max number of expired tokens deleted by one statement.
+     */
+    private final int purgeBatchSize;
+
+    public JpaRefreshTokenStore(RefreshTokenRepository refreshTokenRepository,
+                                UsedLegacyRefreshTokenRepository usedLegacyRefreshTokenRepository,
+                                @Value("${refresh-token.purge.batch-size}") int purgeBatchSize) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.usedLegacyRefreshTokenRepository = usedLegacyRefreshTokenRepository;
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    @Override
+    public void save(UUID tokenId, UUID familyId, long userId, Instant expiresAt) {
+        refreshTokenRepository.save(new RefreshTokenEntity(tokenId, userId, familyId, expiresAt));
+    }
+
+    @Override
+    @Transactional
+    public boolean consume(UUID tokenId, UUID familyId) {
+        if (refreshTokenRepository.deleteTokenById(tokenId) == 1) {
+            return true;
+        }
+        int revokedCount = refreshTokenRepository.deleteAllByFamilyId(familyId);
+        if (revokedCount > 0) {
+            logger.warn("Refresh token %s was reused, %d tokens of its family are revoked"
+                    .formatted(tokenId, revokedCount));
+        }
+        return false;
+    }
+
+    @Override
+    public boolean consumeLegacy(UUID tokenId, Instant expiresAt) {
+        // The insert fails on the primary key if the token is already used, even by another instance at the same time
+        try {
+            usedLegacyRefreshTokenRepository.save(new UsedLegacyRefreshTokenEntity(tokenId, expiresAt));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Refresh token %s issued before the rotation was reused".formatted(tokenId));
+            return false;
+        }
+    }
+
+    @Override
+    public void revokeAll(long userId) {
+        refreshTokenRepository.deleteAllByUserId(userId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${refresh-token.purge.interval}",
+            initialDelayString = "${refresh-token.purge.interval}")
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        int deletedCount = 0;
+        int batchCount;
+        do {
+            batchCount = refreshTokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            deletedCount += batchCount;
+        } while (batchCount == purgeBatchSize);
+        deletedCount += usedLegacyRefreshTokenRepository.deleteExpired(now);
+
+        if (deletedCount > 0) {
+            logger.info("%d expired refresh tokens are purged".formatted(deletedCount));
+        }
+        return deletedCount;
+    }
+}
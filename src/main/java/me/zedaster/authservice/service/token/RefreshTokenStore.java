@@ -0,0 +1,50 @@
+package me.zedaster.authservice.service.token;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Store of the refresh tokens that have been issued but not used yet.
+ * <br/><br/>
+ * Every refresh token can be used only once. The refresh replaces it by a new token of the same family. If a token of
+ * the family is used for the second time, it has been stolen, so the whole family is revoked.
+ */
+public interface RefreshTokenStore {
+    /**
+     * Remembers the issued token.
+     * @param tokenId ID of the token.
+     * @param familyId ID of the family of the token.
+     * @param userId ID of the user.
+     * @param expiresAt Expiration time of the token.
+     */
+    void save(UUID tokenId, UUID familyId, long userId, Instant expiresAt);
+
+    /**
+     * Uses the token. If it was already used or revoked, all tokens of its family are revoked.
+     * @param tokenId ID of the token.
+     * @param familyId ID of the family of the token.
+     * @return True if the token was unused.
+     */
+    boolean consume(UUID tokenId, UUID familyId);
+
+    /**
+     * Uses the token issued before the rotation. Such tokens have no family, so the store only remembers that the token
+     * is used until it expires.
+     * @param tokenId ID derived from the token.
+     * @param expiresAt Expiration time of the token.
+     * @return True if the token was unused.
+     */
+    boolean consumeLegacy(UUID tokenId, Instant expiresAt);
+
+    /**
+     * Revokes all tokens of the user, e.g. when the username or the password is changed.
+     * @param userId ID of the user.
+     */
+    void revokeAll(long userId);
+
+    /**
+     * Deletes the expired tokens.
+     * @return Number of deleted tokens.
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,24 @@
+-- Schema that was created by Hibernate (ddl-auto: update) for the entities of the first release, with the names it
+-- generated. Existing databases are baselined at this version, so it must not be changed. Later changes of the schema
+-- go to the next versions, so the baselined databases receive them too
+
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE users
+(
+    id       BIGINT NOT NULL,
+    email    VARCHAR(255),
+    password VARCHAR(255),
+    username VARCHAR(255),
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT UK6dotkott2kjsp8vw4d0m25fb7 UNIQUE (email),
+    CONSTRAINT UKr43af9ap4edm43mmtq01oddj6 UNIQUE (username)
+);
+
+CREATE TABLE user_roles
+(
+    user_id BIGINT  NOT NULL,
+    role    INTEGER NOT NULL,
+    CONSTRAINT user_roles_pkey PRIMARY KEY (user_id),
+    CONSTRAINT FKhfh9dx7w3ubf1co1vdev94g3f FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -0,0 +1,3 @@
+-- Usernames are resolved by chunks of user IDs (UserRepository#findAllUsernameViewsById). With both columns in the
+-- index, the lookup is an index-only scan and doesn't read the rows with the password hashes
+CREATE INDEX IF NOT EXISTS users_id_username_idx ON users (id, username);
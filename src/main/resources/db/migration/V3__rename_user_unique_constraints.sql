@@ -0,0 +1,10 @@
+-- Registration tells a taken username from a taken email by the name of the violated constraint (UserService), so the
+-- unique constraints get the names of the entity instead of the ones generated by Hibernate. Databases updated by
+-- Hibernate after the names were added to the entity may have both, so the constraints are recreated instead of renamed
+ALTER TABLE users DROP CONSTRAINT IF EXISTS UKr43af9ap4edm43mmtq01oddj6;
+ALTER TABLE users DROP CONSTRAINT IF EXISTS users_username_key;
+ALTER TABLE users ADD CONSTRAINT users_username_key UNIQUE (username);
+
+ALTER TABLE users DROP CONSTRAINT IF EXISTS UK6dotkott2kjsp8vw4d0m25fb7;
+ALTER TABLE users DROP CONSTRAINT IF EXISTS users_email_key;
+ALTER TABLE users ADD CONSTRAINT users_email_key UNIQUE (email);
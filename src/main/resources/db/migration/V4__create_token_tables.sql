@@ -0,0 +1,23 @@
+-- Refresh tokens (JpaRefreshTokenStore) and revoked access tokens (AccessTokenRevocationList). The tables may already
+-- exist in databases updated by Hibernate before the migrations
+CREATE TABLE IF NOT EXISTS refresh_tokens
+(
+    id         UUID                        NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    family_id  UUID                        NOT NULL,
+    user_id    BIGINT                      NOT NULL,
+    CONSTRAINT refresh_tokens_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS refresh_tokens_family_id_idx ON refresh_tokens (family_id);
+CREATE INDEX IF NOT EXISTS refresh_tokens_user_id_idx ON refresh_tokens (user_id);
+CREATE INDEX IF NOT EXISTS refresh_tokens_expires_at_idx ON refresh_tokens (expires_at);
+
+CREATE TABLE IF NOT EXISTS revoked_access_tokens
+(
+    id         UUID                        NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT revoked_access_tokens_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS revoked_access_tokens_expires_at_idx ON revoked_access_tokens (expires_at);
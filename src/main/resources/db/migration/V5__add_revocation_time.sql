@@ -0,0 +1,6 @@
+-- Instances load only the revocations made since their last sync (AccessTokenRevocationList), by the time of the
+-- revocation
+ALTER TABLE revoked_access_tokens
+    ADD COLUMN IF NOT EXISTS revoked_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS revoked_access_tokens_revoked_at_idx ON revoked_access_tokens (revoked_at);
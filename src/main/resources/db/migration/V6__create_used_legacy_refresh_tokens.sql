@@ -0,0 +1,10 @@
+-- Refresh tokens issued before the rotation that have already been exchanged (JpaRefreshTokenStore.consumeLegacy).
+-- The table may be dropped after the last of these tokens is expired
+CREATE TABLE IF NOT EXISTS used_legacy_refresh_tokens
+(
+    id         UUID                        NOT NULL,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT used_legacy_refresh_tokens_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS used_legacy_refresh_tokens_expires_at_idx ON used_legacy_refresh_tokens (expires_at);
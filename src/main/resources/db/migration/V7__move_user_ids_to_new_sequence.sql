@@ -0,0 +1,9 @@
+-- User IDs are taken from users_id_seq by the pooled-lo optimizer (PooledLoSequenceGenerator). The old pooled
+-- optimizer used every value of users_seq as the last ID of its block, so instances with the two optimizers on one
+-- sequence give overlapping IDs. The new sequence starts after every block an old instance could have taken, and
+-- users_seq is dropped, so old instances of a rolling deploy fail to take new blocks instead of reusing IDs
+CREATE SEQUENCE users_id_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('users_id_seq', GREATEST(nextval('users_seq'), (SELECT COALESCE(MAX(id), 0) + 1 FROM users)), false);
+
+DROP SEQUENCE users_seq;
@@ -0,0 +1,64 @@
+package me.zedaster.authservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the Prometheus endpoint on the management port.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0")
+@AutoConfigureObservability(tracing = false)
+public class MetricsTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    /**
+     * Test for scraping the metrics after registration and verification of the token. The metrics of the tokens,
+     * BCrypt, the repository and the HTTP endpoints must be exposed.
+     */
+    @Test
+    public void scrapeMetrics() {
+        ResponseEntity<Map> registerResponse = restTemplate.postForEntity("/auth/register",
+                Map.of("username", "user", "password", "Password1!", "email", "user@example.com"), Map.class);
+        assertEquals(HttpStatus.OK, registerResponse.getStatusCode());
+        String accessToken = registerResponse.getBody().get("accessToken").toString();
+        ResponseEntity<String> verifyResponse = restTemplate.getForEntity("/auth/verifyToken?accessToken={token}",
+                String.class, accessToken);
+        assertEquals(HttpStatus.OK, verifyResponse.getStatusCode());
+
+        String metrics = restTemplate.getForObject("http://localhost:%d/actuator/prometheus".formatted(managementPort),
+                String.class);
+
+        assertTrue(metrics.contains("auth_token_issue_seconds_count"));
+        assertTrue(metrics.contains("auth_token_verify_seconds_bucket{outcome=\"valid\""));
+        assertTrue(metrics.contains("password_bcrypt_seconds_count{operation=\"encode\"}"));
+        assertTrue(metrics.contains("repository=\"UserRepository\""));
+        assertTrue(metrics.contains("uri=\"/auth/verifyToken\""));
+        assertTrue(metrics.contains("uri=\"/auth/register\""));
+    }
+
+    /**
+     * Test for the Prometheus endpoint on the application port. It must be exposed only on the management port.
+     */
+    @Test
+    public void noMetricsOnApplicationPort() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+}
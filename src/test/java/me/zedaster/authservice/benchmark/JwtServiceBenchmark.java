@@ -0,0 +1,231 @@
+package me.zedaster.authservice.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import me.zedaster.authservice.dto.TokenPayload;
+import me.zedaster.authservice.dto.auth.JwtPairDto;
+import me.zedaster.authservice.exception.JwtException;
+import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.model.TokenValidationResult;
+import me.zedaster.authservice.service.JwtService;
+import me.zedaster.authservice.service.cache.AccessTokenCache;
+import me.zedaster.authservice.service.key.JwtKeyStore;
+import me.zedaster.authservice.repository.RevokedAccessTokenRepository;
+import me.zedaster.authservice.service.token.AccessTokenRevocationList;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of issuing and verifying tokens with {@link JwtService}.
+ * <br/>
+ * The {@code *Instrumented} benchmarks use a service bound to a Prometheus registry, so they show the overhead of the
+ * timers. The other services have no-op timers.
+ * <br/>
+ * The {@code legacy*} benchmarks reproduce the previous implementation (a parser built per call, claims assembled
+ * per token, and two exceptions with stack traces for every expired token), so the results show the difference before
+ * and after.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private static final String ACCESS_SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+
+    private static final String REFRESH_SECRET = "4267566B59703373367639792F423F4528482B4D6252655468576D5A71347468";
+
+    private static final long ACCESS_TOKEN_LIFETIME = 5 * 60 * 1000L;
+
+    private static final long REFRESH_TOKEN_LIFETIME = 30 * 24 * 60 * 60 * 1000L;
+
+    private JwtService jwtService;
+
+    private JwtService cachedJwtService;
+
+    private JwtService instrumentedJwtService;
+
+    private SecretKey accessSecretKey;
+
+    private SecretKey refreshSecretKey;
+
+    private TokenPayload payload;
+
+    private String accessToken;
+
+    private String refreshToken;
+
+    private String expiredToken;
+
+    @Setup
+    public void setUp() {
+        // The cache of size 0 keeps nothing, so the parser itself is measured
+        AccessTokenCache emptyCache = new AccessTokenCache(0);
+        AccessTokenCache cache = new AccessTokenCache(1000);
+        RefreshTokenStore refreshTokenStore = new UnlimitedRefreshTokenStore();
+        // The database is only used to revoke tokens, so the list works without it here
+        AccessTokenRevocationList revocationList =
+                new AccessTokenRevocationList(Mockito.mock(RevokedAccessTokenRepository.class), 10000, 1000);
+        jwtService = new JwtService(JwtKeyStore.fromSecrets(ACCESS_SECRET, REFRESH_SECRET, emptyCache), emptyCache,
+                refreshTokenStore, revocationList, Instant.EPOCH);
+        cachedJwtService = new JwtService(JwtKeyStore.fromSecrets(ACCESS_SECRET, REFRESH_SECRET, cache), cache,
+                refreshTokenStore, revocationList, Instant.EPOCH);
+        AccessTokenCache instrumentedCache = new AccessTokenCache(1000);
+        instrumentedJwtService = new JwtService(
+                JwtKeyStore.fromSecrets(ACCESS_SECRET, REFRESH_SECRET, instrumentedCache), instrumentedCache,
+                refreshTokenStore, revocationList, Instant.EPOCH);
+        instrumentedJwtService.bindTo(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        accessSecretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET));
+        refreshSecretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(REFRESH_SECRET));
+        payload = new TokenPayload(1L, "barbra.streisand", Role.USER);
+        JwtPairDto pair = jwtService.generateTokens(payload);
+        accessToken = pair.getAccessToken();
+        refreshToken = pair.getRefreshToken();
+        expiredToken = Jwts.builder()
+                .claim("sub", String.valueOf(payload.getUserId()))
+                .claim("username", payload.getUsername())
+                .claim("role", payload.getRole().name())
+                .expiration(new Date(System.currentTimeMillis() - ACCESS_TOKEN_LIFETIME))
+                .signWith(accessSecretKey)
+                .compact();
+    }
+
+    @Benchmark
+    public void verify() throws JwtException {
+        jwtService.validateAccessToken(accessToken);
+    }
+
+    @Benchmark
+    public void verifyCached() throws JwtException {
+        cachedJwtService.validateAccessToken(accessToken);
+    }
+
+    @Benchmark
+    public void verifyCachedInstrumented() throws JwtException {
+        instrumentedJwtService.validateAccessToken(accessToken);
+    }
+
+    @Benchmark
+    public TokenValidationResult checkExpiredInstrumented() {
+        return instrumentedJwtService.checkAccessToken(expiredToken);
+    }
+
+    @Benchmark
+    public Object legacyVerify() {
+        return Jwts.parser()
+                .verifyWith(accessSecretKey)
+                .build()
+                .parseSignedClaims(accessToken);
+    }
+
+    @Benchmark
+    public TokenValidationResult checkExpired() {
+        return jwtService.checkAccessToken(expiredToken);
+    }
+
+    @Benchmark
+    public Object verifyExpired() {
+        try {
+            return jwtService.validateAccessToken(expiredToken);
+        } catch (JwtException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object legacyVerifyExpired() {
+        try {
+            return Jwts.parser()
+                    .verifyWith(accessSecretKey)
+                    .build()
+                    .parseSignedClaims(expiredToken);
+        } catch (io.jsonwebtoken.JwtException e) {
+            // The previous exception of the service filled in its stack trace
+            return new IllegalStateException("The access token is invalid!");
+        }
+    }
+
+    @Benchmark
+    public JwtPairDto issue() {
+        return jwtService.generateTokens(payload);
+    }
+
+    @Benchmark
+    public JwtPairDto refresh() throws JwtException {
+        return jwtService.refreshToken(refreshToken);
+    }
+
+    @Benchmark
+    public JwtPairDto legacyIssue() {
+        String accessToken = Jwts.builder()
+                .claim("sub", String.valueOf(payload.getUserId()))
+                .claim("username", payload.getUsername())
+                .claim("role", payload.getRole().name())
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + ACCESS_TOKEN_LIFETIME))
+                .signWith(accessSecretKey)
+                .compact();
+
+        String refreshToken = Jwts.builder()
+                .claim("sub", String.valueOf(payload.getUserId()))
+                .claim("username", payload.getUsername())
+                .claim("role", payload.getRole().name())
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + REFRESH_TOKEN_LIFETIME))
+                .signWith(refreshSecretKey)
+                .compact();
+
+        return new JwtPairDto(accessToken, refreshToken);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * Store that accepts every refresh token any number of times, so the benchmarks measure the tokens without the
+     * database.
+     */
+    private static class UnlimitedRefreshTokenStore implements RefreshTokenStore {
+        @Override
+        public void save(UUID tokenId, UUID familyId, long userId, Instant expiresAt) {
+        }
+
+        @Override
+        public boolean consume(UUID tokenId, UUID familyId) {
+            return true;
+        }
+
+        @Override
+        public boolean consumeLegacy(UUID tokenId, Instant expiresAt) {
+            return true;
+        }
+
+        @Override
+        public void revokeAll(long userId) {
+        }
+
+        @Override
+        public int purgeExpired() {
+            return 0;
+        }
+    }
+}
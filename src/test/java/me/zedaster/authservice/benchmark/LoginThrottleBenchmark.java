@@ -0,0 +1,49 @@
+package me.zedaster.authservice.benchmark;
+
+import me.zedaster.authservice.exception.TooManyAttemptsException;
+import me.zedaster.authservice.service.throttle.LoginThrottle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a login attempt rejected by {@link LoginThrottle}, compared with the BCrypt check it saves
+ * (see {@link PasswordEncoderBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginThrottleBenchmark {
+    private LoginThrottle loginThrottle;
+
+    @Setup
+    public void setUp() {
+        loginThrottle = new LoginThrottle(1, Duration.ofHours(1), 1, Duration.ofHours(1), 100_000);
+        loginThrottle.acquire("victim", "10.0.0.1");
+    }
+
+    @Benchmark
+    public Object rejectedByIp() {
+        try {
+            loginThrottle.acquire("victim", "10.0.0.1");
+            return null;
+        } catch (TooManyAttemptsException e) {
+            return e;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoginThrottleBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
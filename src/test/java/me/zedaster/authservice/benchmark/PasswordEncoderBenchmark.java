@@ -0,0 +1,47 @@
+package me.zedaster.authservice.benchmark;
+
+import me.zedaster.authservice.service.encoder.BcryptPasswordEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of matching a password with {@link BcryptPasswordEncoder} at several cost levels. Every next cost doubles the
+ * time, so the results show how much a login costs at the configured strength.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+    @Param({"5", "8", "10", "12"})
+    private int strength;
+
+    private BcryptPasswordEncoder encoder;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        encoder = new BcryptPasswordEncoder(strength);
+        hash = encoder.encode("Password1!");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("Password1!", hash);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PasswordEncoderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,79 @@
+package me.zedaster.authservice.benchmark;
+
+import me.zedaster.authservice.repository.RevokedAccessTokenRepository;
+import me.zedaster.authservice.service.token.AccessTokenRevocationList;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the revocation check that is done for every verified access token.
+ * <br/>
+ * The {@code exactSet*} benchmark looks the token up in the exact set only, without the Bloom filter in front of it.
+ * Run with {@code -prof gc} to see that the checks don't allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevocationListBenchmark {
+    /**
+     * Number of revoked tokens that are not expired yet.
+     */
+    @Param({"1000", "10000"})
+    private int revokedCount;
+
+    private AccessTokenRevocationList revocationList;
+
+    private Map<String, Long> exactSet;
+
+    private String validTokenId;
+
+    private String revokedTokenId;
+
+    @Setup
+    public void setUp() {
+        // The database is only written by the revocations, so the list works without it here
+        revocationList = new AccessTokenRevocationList(Mockito.mock(RevokedAccessTokenRepository.class), 10000, 1000);
+        exactSet = new ConcurrentHashMap<>();
+        long expiration = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < revokedCount; i++) {
+            revokedTokenId = UUID.randomUUID().toString();
+            revocationList.revoke(revokedTokenId, expiration);
+            exactSet.put(revokedTokenId, expiration);
+        }
+        validTokenId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public boolean checkValid() {
+        return revocationList.isRevoked(validTokenId);
+    }
+
+    @Benchmark
+    public boolean checkRevoked() {
+        return revocationList.isRevoked(revokedTokenId);
+    }
+
+    @Benchmark
+    public boolean exactSetValid() {
+        return exactSet.containsKey(validTokenId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RevocationListBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,102 @@
+package me.zedaster.authservice.benchmark;
+
+import me.zedaster.authservice.AuthServiceApplication;
+import me.zedaster.authservice.entity.PooledLoSequenceGenerator;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of inserted users per second (with the in-memory H2 database of the test profile).
+ * <br/>
+ * {@code registerOne} inserts one user per transaction like the registration does, {@code insertBlock} inserts
+ * {@link #BLOCK_SIZE} users in one transaction. An allocation size of 1 makes a sequence call for every user,
+ * a batch size of 1 sends every insert separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 6, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserInsertBenchmark {
+    private static final int BLOCK_SIZE = 100;
+
+    @Param({"1", "50"})
+    private int allocationSize;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private UserRepository userRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private long counter;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                // Arguments override the test profile (default properties don't)
+                .run("--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties." + PooledLoSequenceGenerator.ALLOCATION_SIZE_SETTING + "=" + allocationSize,
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        userRepository = context.getBean(UserRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserEntity registerOne() {
+        return userRepository.save(newUser());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public Iterable<UserEntity> insertBlock() {
+        return transactionTemplate.execute(status -> {
+            List<UserEntity> users = new ArrayList<>(BLOCK_SIZE);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                users.add(newUser());
+            }
+            return userRepository.saveAll(users);
+        });
+    }
+
+    private UserEntity newUser() {
+        long number = counter++;
+        return UserEntity.builder()
+                .username("user" + number)
+                .email("user" + number + "@mail.com")
+                .password("encryptedPass")
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(UserInsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package me.zedaster.authservice.benchmark;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import me.zedaster.authservice.dto.auth.NewUserDto;
+import me.zedaster.authservice.dto.auth.UserCredentialsDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the Bean Validation of the DTOs that are validated on every registration and login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    private ValidatorFactory validatorFactory;
+
+    private Validator validator;
+
+    private NewUserDto validNewUser;
+
+    private NewUserDto invalidNewUser;
+
+    private UserCredentialsDto credentials;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validNewUser = new NewUserDto("barbra.streisand", "Password1!", "barbra@example.com");
+        invalidNewUser = new NewUserDto("b", "password", "barbra");
+        credentials = new UserCredentialsDto("barbra.streisand", "Password1!");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<NewUserDto>> validNewUser() {
+        return validator.validate(validNewUser);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<NewUserDto>> invalidNewUser() {
+        return validator.validate(invalidNewUser);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UserCredentialsDto>> credentials() {
+        return validator.validate(credentials);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ValidationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,6 +1,9 @@
 package me.zedaster.authservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.zedaster.authservice.dto.auth.AccessTokensDto;
 import me.zedaster.authservice.util.MvcTestUtils;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -13,11 +16,15 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -92,7 +99,7 @@ public class AuthControllerTest {
 
         // Assert the refreshed refresh token
         URI refRefreshTokenUri = UriComponentsBuilder.fromUriString("/auth/refreshToken")
-                .queryParam("refreshToken", regRefreshToken)
+                .queryParam("refreshToken", refRefreshToken)
                 .build()
                 .toUri();
         mockMvc.perform(get(refRefreshTokenUri))
@@ -178,4 +185,185 @@ public class AuthControllerTest {
                 .andExpect(jsonPath("$.message").value("The refresh token is invalid!"));
     }
 
+    /**
+     * Test for refreshing with a used refresh token. The whole family of the token must be revoked, including the
+     * token that replaced it.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void refreshUsedToken() throws Exception {
+        MvcResult registerResult = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"user\", \"password\": \"Password1!\", \"email\": \"user@example.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String firstRefreshToken = mvcUtils.jsonResultToMap(registerResult).get("refreshToken").toString();
+
+        MvcResult refreshResult = mockMvc.perform(get("/auth/refreshToken").queryParam("refreshToken", firstRefreshToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        String secondRefreshToken = mvcUtils.jsonResultToMap(refreshResult).get("refreshToken").toString();
+
+        // The first token is used again
+        mockMvc.perform(get("/auth/refreshToken").queryParam("refreshToken", firstRefreshToken))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("$.message").value("The refresh token is invalid!"));
+        mockMvc.perform(get("/auth/refreshToken").queryParam("refreshToken", secondRefreshToken))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("$.message").value("The refresh token is invalid!"));
+    }
+
+    /**
+     * Test for revoking an access token. It must not be accepted after the revocation.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void revokeToken() throws Exception {
+        MvcResult registerResult = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"user\", \"password\": \"Password1!\", \"email\": \"user@example.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String accessToken = mvcUtils.jsonResultToMap(registerResult).get("accessToken").toString();
+
+        mockMvc.perform(post("/auth/revokeToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accessToken\": \"%s\"}".formatted(accessToken)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+
+        mockMvc.perform(get("/auth/verifyToken").queryParam("accessToken", accessToken))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("$.message").value("The access token is invalid!"));
+        mockMvc.perform(post("/auth/revokeToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accessToken\": \"%s\"}".formatted(accessToken)))
+                .andExpect(status().is(400));
+    }
+
+    /**
+     * Test for revoking without an access token.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void revokeNullToken() throws Exception {
+        mockMvc.perform(post("/auth/revokeToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("$.errorsByField.accessToken").value("Access token must be not null!"));
+    }
+
+    /**
+     * Test for verifying a batch of valid and invalid access tokens. The batch is big enough to be verified in parallel.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void verifyManyTokens() throws Exception {
+        MvcResult registerResult = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"user\", \"password\": \"Password1!\", \"email\": \"user@example.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        Map<String, Object> registerResultJson = mvcUtils.jsonResultToMap(registerResult);
+        String accessToken = registerResultJson.get("accessToken").toString();
+        String refreshToken = registerResultJson.get("refreshToken").toString();
+
+        List<String> accessTokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            accessTokens.add(accessToken);
+            accessTokens.add(i % 2 == 0 ? refreshToken : "not.a.token");
+        }
+
+        String json = new ObjectMapper().writeValueAsString(new AccessTokensDto(accessTokens));
+        mockMvc.perform(post("/auth/verifyTokens")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(40)))
+                .andExpect(jsonPath("$[0].valid").value(true))
+                .andExpect(jsonPath("$[0].sub").value("1"))
+                .andExpect(jsonPath("$[0].username").value("user"))
+                .andExpect(jsonPath("$[0].role").value("USER"))
+                .andExpect(jsonPath("$[1].*", hasSize(1)))
+                .andExpect(jsonPath("$[1].valid").value(false))
+                .andExpect(jsonPath("$[3].valid").value(false))
+                .andExpect(jsonPath("$[38].valid").value(true))
+                .andExpect(jsonPath("$[39].valid").value(false));
+    }
+
+    /**
+     * Test for verifying too many access tokens at once.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void verifyTooManyTokens() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(
+                new AccessTokensDto(Collections.nCopies(1001, "not.a.token")));
+        mockMvc.perform(post("/auth/verifyTokens")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("$.errorsByField.accessTokens")
+                        .value("No more than 1000 tokens can be verified at once!"));
+    }
+
+    /**
+     * Test for verifying an access token with the claims in the response body and in the response headers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void verifyTokenWithClaims() throws Exception {
+        MvcResult registerResult = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"user\", \"password\": \"Password1!\", \"email\": \"user@example.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String accessToken = mvcUtils.jsonResultToMap(registerResult).get("accessToken").toString();
+
+        URI claimsUri = UriComponentsBuilder.fromUriString("/auth/verifyToken")
+                .queryParam("accessToken", accessToken)
+                .queryParam("mode", "CLAIMS")
+                .build()
+                .toUri();
+        MvcResult claimsResult = mockMvc.perform(get(claimsUri))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(4)))
+                .andExpect(jsonPath("$.sub").value("1"))
+                .andExpect(jsonPath("$.username").value("user"))
+                .andExpect(jsonPath("$.role").value("USER"))
+                .andReturn();
+        long exp = ((Number) mvcUtils.jsonResultToMap(claimsResult).get("exp")).longValue();
+        long secondsLeft = exp - System.currentTimeMillis() / 1000;
+        Assertions.assertTrue(secondsLeft > 0 && secondsLeft <= 5 * 60);
+
+        URI headersUri = UriComponentsBuilder.fromUriString("/auth/verifyToken")
+                .queryParam("accessToken", accessToken)
+                .queryParam("mode", "HEADERS")
+                .build()
+                .toUri();
+        mockMvc.perform(get(headersUri))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("X-Auth-Sub", "1"))
+                .andExpect(header().string("X-Auth-Username", "user"))
+                .andExpect(header().string("X-Auth-Role", "USER"))
+                .andExpect(header().string("X-Auth-Exp", String.valueOf(exp)));
+    }
+
+    /**
+     * Test for verifying a wrong access token with the claims in the response headers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void verifyWrongTokenWithHeaders() throws Exception {
+        URI verifyTokenUri = UriComponentsBuilder.fromUriString("/auth/verifyToken")
+                .queryParam("accessToken", "not.a.token")
+                .queryParam("mode", "HEADERS")
+                .build()
+                .toUri();
+        mockMvc.perform(get(verifyTokenUri))
+                .andExpect(status().is(400))
+                .andExpect(header().doesNotExist("X-Auth-Sub"))
+                .andExpect(jsonPath("$.message").value("The access token is invalid!"));
+    }
 }
@@ -0,0 +1,66 @@
+package me.zedaster.authservice.controller;
+
+import me.zedaster.authservice.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the IP limit of logins that come through the gateway. The IPs of the clients must be taken from
+ * X-Forwarded-For, not from the connection of the gateway.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"login.throttle.ip.capacity=2", "login.throttle.ip.refill-interval=1h"})
+public class ForwardedClientIpTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    /**
+     * Mock service for getting users
+     */
+    @MockBean
+    private UserService userService;
+
+    /**
+     * Test for logins of several clients through the same proxy (the loopback). They must not share the IP limit.
+     */
+    @Test
+    public void clientsBehindProxyHaveSeparateLimits() {
+        when(userService.getUser(any())).thenReturn(Optional.empty());
+
+        assertEquals(HttpStatus.BAD_REQUEST, login("user1", "203.0.113.1").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, login("user2", "203.0.113.1").getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, login("user3", "203.0.113.1").getStatusCode());
+
+        assertEquals(HttpStatus.BAD_REQUEST, login("user4", "203.0.113.2").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, login("user5", "203.0.113.3").getStatusCode());
+    }
+
+    /**
+     * Sends a login request forwarded by the proxy.
+     * @param username Username of the login.
+     * @param clientIp IP of the client in X-Forwarded-For.
+     * @return Response of the login.
+     */
+    private ResponseEntity<Map> login(String username, String clientIp) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", clientIp);
+        Map<String, String> credentials = Map.of("usernameOrEmail", username, "password", "Password1!");
+        return restTemplate.postForEntity("/auth/login", new HttpEntity<>(credentials, headers), Map.class);
+    }
+}
@@ -1,17 +1,25 @@
 package me.zedaster.authservice.controller;
 
+import me.zedaster.authservice.dto.profile.UsernamesDto;
 import me.zedaster.authservice.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.hasSize;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,4 +52,73 @@ public class InternalProfileControllerTest {
                 .andExpect(jsonPath("[0]").value("barbra.streisand"))
                 .andExpect(jsonPath("[1]").value("john.doe"));
     }
+
+    @Test
+    public void getUsernamesByIdsWithNullId() throws Exception {
+        mockMvc.perform(get("/internal/profile/usernames?ids=1,,2"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorsByField.userIds").value("User IDs must be not null!"));
+        verify(userService, never()).getUsernames(any());
+    }
+
+    @Test
+    public void resolveUsernamesByIds() throws Exception {
+        Map<Long, String> usernames = new LinkedHashMap<>();
+        usernames.put(2L, "john.doe");
+        usernames.put(1L, "barbra.streisand");
+        when(userService.resolveUsernames(List.of(2L, 1L, 2L, 100L)))
+                .thenReturn(new UsernamesDto(usernames, List.of(100L)));
+        mockMvc.perform(get("/internal/profile/usernames/resolve?ids=2,1,2,100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernames.2").value("john.doe"))
+                .andExpect(jsonPath("$.usernames.1").value("barbra.streisand"))
+                .andExpect(jsonPath("$.missingIds", hasSize(1)))
+                .andExpect(jsonPath("$.missingIds[0]").value(100));
+    }
+
+    @Test
+    public void resolveUsernamesByIdsWithNullId() throws Exception {
+        mockMvc.perform(get("/internal/profile/usernames/resolve?ids=1,,2"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorsByField.userIds").value("User IDs must be not null!"));
+        verify(userService, never()).resolveUsernames(any());
+    }
+
+    @Test
+    public void resolveManyUsernames() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UsernamesDto> chunkConsumer = invocation.getArgument(1);
+            chunkConsumer.accept(new UsernamesDto(Map.of(1L, "barbra.streisand"), List.of()));
+            chunkConsumer.accept(new UsernamesDto(Map.of(2L, "john.doe"), List.of(100L)));
+            return null;
+        }).when(userService).resolveUsernamesInChunks(eq(List.of(1L, 2L, 100L)), any());
+
+        mockMvc.perform(post("/internal/profile/usernames")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 2, 100]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernames.1").value("barbra.streisand"))
+                .andExpect(jsonPath("$.usernames.2").value("john.doe"))
+                .andExpect(jsonPath("$.missingIds", hasSize(1)))
+                .andExpect(jsonPath("$.missingIds[0]").value(100));
+    }
+
+    @Test
+    public void resolveManyUsernamesWithoutIds() throws Exception {
+        mockMvc.perform(post("/internal/profile/usernames")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).resolveUsernamesInChunks(any(), any());
+    }
+
+    @Test
+    public void resolveManyUsernamesWithNullId() throws Exception {
+        mockMvc.perform(post("/internal/profile/usernames")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, null]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorsByField['ids[1]']").value("User IDs must be not null!"));
+        verify(userService, never()).resolveUsernamesInChunks(any(), any());
+    }
 }
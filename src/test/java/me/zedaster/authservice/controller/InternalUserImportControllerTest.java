@@ -0,0 +1,71 @@
+package me.zedaster.authservice.controller;
+
+import me.zedaster.authservice.dto.migration.ImportProblemDto;
+import me.zedaster.authservice.dto.migration.ImportReportDto;
+import me.zedaster.authservice.model.ImportProblemType;
+import me.zedaster.authservice.service.migration.UserImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for {@link InternalUserImportController}
+ */
+@WebMvcTest(InternalUserImportController.class)
+public class InternalUserImportControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UserImportService userImportService;
+
+    @Test
+    public void importUsers() throws Exception {
+        String body = "{\"username\":\"first\"}\n{\"username\":\"ünicode\"}\n";
+        // The body must be decoded as UTF-8 whatever the charset of the content type is
+        when(userImportService.importUsers(any())).thenAnswer(invocation -> {
+            String read = new BufferedReader(invocation.<Reader>getArgument(0)).lines()
+                    .collect(Collectors.joining("\n", "", "\n"));
+            assertEquals(body, read);
+            return new ImportReportDto(1, 1, 0,
+                    List.of(new ImportProblemDto(2, ImportProblemType.DUPLICATE, "Username is already taken!")));
+        });
+
+        mockMvc.perform(post("/internal/users/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.invalid").value(0))
+                .andExpect(jsonPath("$.problems[0].line").value(2))
+                .andExpect(jsonPath("$.problems[0].type").value("DUPLICATE"))
+                .andExpect(jsonPath("$.problems[0].message").value("Username is already taken!"));
+        verify(userImportService).importUsers(any());
+    }
+
+    @Test
+    public void importUsersWithWrongContentType() throws Exception {
+        mockMvc.perform(post("/internal/users/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+        verifyNoInteractions(userImportService);
+    }
+}
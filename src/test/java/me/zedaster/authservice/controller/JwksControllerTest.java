@@ -0,0 +1,66 @@
+package me.zedaster.authservice.controller;
+
+import me.zedaster.authservice.service.key.JwksDocument;
+import me.zedaster.authservice.service.key.JwtKeyStore;
+import me.zedaster.authservice.service.key.KeyRing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for {@link JwksController}
+ */
+@WebMvcTest(JwksController.class)
+public class JwksControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private JwtKeyStore keyStore;
+
+    private JwksDocument jwks;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        KeyRing keyRing = new KeyRing("EdDSA", "current", keyPair.getPrivate(), Map.of("current", keyPair.getPublic()));
+        jwks = new JwksDocument(keyRing);
+        when(keyStore.getJwks()).thenReturn(jwks);
+    }
+
+    /**
+     * Test for getting the keys. The response must be cacheable.
+     */
+    @Test
+    public void getJwks() throws Exception {
+        mockMvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", jwks.getEtag()))
+                .andExpect(header().string("Cache-Control", "max-age=300, public"))
+                .andExpect(jsonPath("$.keys", hasSize(1)))
+                .andExpect(jsonPath("$.keys[0].kid").value("current"))
+                .andExpect(jsonPath("$.keys[0].alg").value("EdDSA"))
+                .andExpect(jsonPath("$.keys[0].kty").value("OKP"));
+    }
+
+    /**
+     * Test for getting the keys that are not changed since the last request.
+     */
+    @Test
+    public void getNotModifiedJwks() throws Exception {
+        mockMvc.perform(get("/.well-known/jwks.json").header("If-None-Match", jwks.getEtag()))
+                .andExpect(status().isNotModified());
+    }
+}
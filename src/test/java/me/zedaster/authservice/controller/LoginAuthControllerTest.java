@@ -1,8 +1,11 @@
 package me.zedaster.authservice.controller;
 
 import jakarta.annotation.Nullable;
+import me.zedaster.authservice.exception.OverloadedException;
+import me.zedaster.authservice.exception.TooManyAttemptsException;
 import me.zedaster.authservice.service.JwtService;
 import me.zedaster.authservice.service.UserService;
+import me.zedaster.authservice.service.throttle.LoginThrottle;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -15,6 +18,7 @@ import java.util.Optional;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -41,8 +45,32 @@ public class LoginAuthControllerTest {
     @MockBean
     private JwtService jwtService;
 
+    /**
+     * Mock throttle of login attempts
+     */
+    @MockBean
+    private LoginThrottle loginThrottle;
+
     // Right login tested in AuthControllerTest.java
 
+    /**
+     * Test for logging in when the account or the IP has no attempts left. The password must not be checked.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void throttledLogin() throws Exception {
+        doThrow(new TooManyAttemptsException("Too many login attempts, try again later!", 30))
+                .when(loginThrottle).acquire("user", "127.0.0.1");
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"usernameOrEmail\": \"user\", \"password\": \"Password1!\"}"))
+                .andExpect(status().is(429))
+                .andExpect(header().string("Retry-After", "30"))
+                .andExpect(jsonPath("$.message").value("Too many login attempts, try again later!"));
+        verify(userService, never()).getUser(any());
+    }
+
     /**
      * Test for logging in with correct, but wrong credentials.
      * @throws Exception If something goes wrong.
@@ -61,6 +89,22 @@ public class LoginAuthControllerTest {
                 credentials.getUsernameOrEmail().equals("user") && credentials.getPassword().equals("Password1!")));
     }
 
+    /**
+     * Test for logging in when the password hashing is overloaded.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void overloadedLogin() throws Exception {
+        when(userService.getUser(any())).thenThrow(new OverloadedException("Too many requests, try again later!", 1));
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"usernameOrEmail\": \"user\", \"password\": \"Password1!\"}"))
+                .andExpect(status().is(503))
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.message").value("Too many requests, try again later!"));
+    }
+
     /**
      * Test for logging in with too short username or email.
      */
@@ -7,9 +7,17 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -310,4 +318,41 @@ public class RegisterAuthControllerTest {
                 .andExpect(status().is(400))
                 .andExpect(jsonPath("$.message").value("User with the same email already exists!"));
     }
+
+    /**
+     * Test for registering users with the same username in parallel. Exactly one of them must be registered.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sameUsernameConcurrentlyTest() throws Exception {
+        int registrations = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(registrations);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MvcResult>> results = new ArrayList<>();
+        for (int i = 0; i < registrations; i++) {
+            String content = "{\"username\": \"racer\", \"password\": \"Password1!\", \"email\": \"racer%d@example.com\"}"
+                    .formatted(i);
+            results.add(executor.submit(() -> {
+                start.await();
+                return mockMvc.perform(post("/auth/register")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(content))
+                        .andReturn();
+            }));
+        }
+        start.countDown();
+
+        int registered = 0;
+        for (Future<MvcResult> result : results) {
+            MockHttpServletResponse response = result.get(30, TimeUnit.SECONDS).getResponse();
+            if (response.getStatus() == 200) {
+                registered++;
+            } else {
+                assertEquals(400, response.getStatus());
+                assertTrue(response.getContentAsString().contains("User with the same username already exists!"));
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, registered);
+    }
 }
@@ -0,0 +1,100 @@
+package me.zedaster.authservice.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import me.zedaster.authservice.service.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link VerifyTokenFilter}
+ */
+public class VerifyTokenFilterTest {
+    private JwtService jwtService;
+
+    private FilterChain chain;
+
+    private VerifyTokenFilter filter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        jwtService = mock(JwtService.class);
+        chain = mock(FilterChain.class);
+        filter = new VerifyTokenFilter(jwtService, new ObjectMapper());
+    }
+
+    /**
+     * Test for verifying a valid token. The controller must not be called.
+     */
+    @Test
+    public void verifyValidToken() throws Exception {
+        when(jwtService.isAccessTokenValid("valid")).thenReturn(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(newRequest("valid", null), response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertEquals("{\"success\":true}", response.getContentAsString());
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    /**
+     * Test for verifying an invalid token.
+     */
+    @Test
+    public void verifyInvalidToken() throws Exception {
+        when(jwtService.isAccessTokenValid("invalid")).thenReturn(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(newRequest("invalid", "SUCCESS"), response, chain);
+
+        assertEquals(400, response.getStatus());
+        assertEquals("{\"message\":\"The access token is invalid!\"}", response.getContentAsString());
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    /**
+     * Test for verifying a token in another mode. It must be passed to the controller.
+     */
+    @Test
+    public void passOtherMode() throws Exception {
+        MockHttpServletRequest request = newRequest("valid", "CLAIMS");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain, times(1)).doFilter(request, response);
+        verify(jwtService, never()).isAccessTokenValid(any());
+    }
+
+    /**
+     * Test for a request without the token. It must be passed to the controller.
+     */
+    @Test
+    public void passMissingToken() throws Exception {
+        MockHttpServletRequest request = newRequest(null, null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain, times(1)).doFilter(request, response);
+    }
+
+    private static MockHttpServletRequest newRequest(String accessToken, String mode) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/auth/verifyToken");
+        if (accessToken != null) {
+            request.setParameter("accessToken", accessToken);
+        }
+        if (mode != null) {
+            request.setParameter("mode", mode);
+        }
+        return request;
+    }
+}
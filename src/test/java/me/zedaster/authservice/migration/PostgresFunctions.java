@@ -0,0 +1,34 @@
+package me.zedaster.authservice.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * PostgreSQL functions used by the migrations that H2 doesn't have. They are registered as aliases in the H2 databases
+ * of {@link SchemaMigrationTest}.
+ */
+public final class PostgresFunctions {
+    private PostgresFunctions() {
+    }
+
+    /**
+     * Sets the value of the sequence like setval of PostgreSQL.
+     * @param connection Connection to the database.
+     * @param sequenceName Name of the sequence.
+     * @param value New value of the sequence.
+     * @param isCalled False if the next call of the sequence returns the value itself.
+     * @return Value.
+     * @throws SQLException If the sequence can't be changed.
+     */
+    public static long setval(Connection connection, String sequenceName, long value, boolean isCalled)
+            throws SQLException {
+        if (isCalled) {
+            throw new SQLException("Only setval with is_called = false is supported");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER SEQUENCE %s RESTART WITH %d".formatted(sequenceName, value));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,203 @@
+package me.zedaster.authservice.migration;
+
+import me.zedaster.authservice.config.IdSequenceGuard;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.entity.UserRoleEntity;
+import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.repository.UserRepository;
+import me.zedaster.authservice.repository.UsernameView;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the migrations in db/migration. The context only starts if the migrated schema matches the entities.
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.datasource.url=jdbc:h2:mem:migration" + SchemaMigrationTest.H2_OPTIONS
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class SchemaMigrationTest {
+    /**
+     * Options of the H2 databases. The PostgreSQL functions used by the migrations are registered as aliases.
+     */
+    static final String H2_OPTIONS = ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;INIT=CREATE ALIAS "
+            + "IF NOT EXISTS setval FOR 'me.zedaster.authservice.migration.PostgresFunctions.setval'";
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    /**
+     * Test that all the migrations are applied.
+     */
+    @Test
+    public void migrationsAreApplied() {
+        List<String> versions = Arrays.stream(flyway.info().applied())
+                .map(info -> info.getVersion().getVersion())
+                .toList();
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), versions);
+        assertEquals(0, flyway.info().pending().length);
+        assertTrue(Arrays.stream(flyway.info().applied()).allMatch(info -> info.getState().isApplied()));
+    }
+
+    /**
+     * Test that the indexes for the username lookups exist.
+     */
+    @Test
+    public void indexesExist() {
+        List<String> indexNames = jdbcTemplate.queryForList(
+                "SELECT index_name FROM information_schema.indexes WHERE table_name = 'users'", String.class);
+        assertTrue(indexNames.contains("users_id_username_idx"));
+        assertTrue(indexNames.stream().anyMatch(name -> name.startsWith(UserEntity.USERNAME_CONSTRAINT)));
+        assertTrue(indexNames.stream().anyMatch(name -> name.startsWith(UserEntity.EMAIL_CONSTRAINT)));
+    }
+
+    /**
+     * Test for migrating a database created by Hibernate for the first release. It's baselined at version 1 and must
+     * receive the token tables and the names of the unique constraints. The IDs must continue after every block the
+     * pooled optimizer could have taken from the old sequence.
+     */
+    @Test
+    public void migrateBaselineDatabase() {
+        DriverManagerDataSource dataSource = createBaselineDatabase("baseline");
+        JdbcTemplate baselineJdbcTemplate = new JdbcTemplate(dataSource);
+        baselineJdbcTemplate.update(
+                "INSERT INTO users (id, email, password, username) VALUES (1, 'user@mail.com', 'hash', 'user')");
+        // The pooled optimizer of an old instance took the blocks ending with 1 and 51
+        baselineJdbcTemplate.queryForObject("SELECT nextval('users_seq')", Long.class);
+        long lastPooledValue = baselineJdbcTemplate.queryForObject("SELECT nextval('users_seq')", Long.class);
+
+        migrateWithBaseline(dataSource);
+
+        assertTrue(baselineJdbcTemplate.queryForObject("SELECT nextval('%s')".formatted(UserEntity.ID_SEQUENCE),
+                Long.class) > lastPooledValue);
+        // The old sequence is dropped
+        assertDoesNotThrow(() -> new IdSequenceGuard(baselineJdbcTemplate).check());
+
+        assertEquals(List.of("users_email_key", "users_username_key"), findUniqueConstraintNames(baselineJdbcTemplate));
+        assertEquals(1, baselineJdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        assertEquals(0, baselineJdbcTemplate.queryForObject("SELECT COUNT(*) FROM refresh_tokens", Integer.class));
+        assertEquals(0, baselineJdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_access_tokens",
+                Integer.class));
+    }
+
+    /**
+     * Test for migrating a database that Hibernate updated after the names of the unique constraints were added to the
+     * entity. It has both the generated and the named constraints, and only the named ones must be left.
+     */
+    @Test
+    public void migrateDatabaseWithBothUniqueConstraints() {
+        DriverManagerDataSource dataSource = createBaselineDatabase("updated");
+        JdbcTemplate updatedJdbcTemplate = new JdbcTemplate(dataSource);
+        updatedJdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT users_username_key UNIQUE (username)");
+        updatedJdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT users_email_key UNIQUE (email)");
+
+        migrateWithBaseline(dataSource);
+
+        assertEquals(List.of("users_email_key", "users_username_key"), findUniqueConstraintNames(updatedJdbcTemplate));
+    }
+
+    /**
+     * Test for starting the application while an instance of the previous release has created the old sequence again.
+     */
+    @Test
+    public void guardRejectsPooledSequence() {
+        IdSequenceGuard guard = new IdSequenceGuard(jdbcTemplate);
+        assertDoesNotThrow(guard::check);
+
+        jdbcTemplate.execute("CREATE SEQUENCE %s START WITH 1 INCREMENT BY 50"
+                .formatted(IdSequenceGuard.POOLED_SEQUENCE));
+        try {
+            assertThrows(IllegalStateException.class, guard::check);
+        } finally {
+            jdbcTemplate.execute("DROP SEQUENCE " + IdSequenceGuard.POOLED_SEQUENCE);
+        }
+    }
+
+    /**
+     * Test for saving and reading a user with a role in the migrated schema.
+     */
+    @Test
+    public void saveUserWithRole() {
+        UserEntity moder = testEntityManager.persist(UserEntity.builder()
+                .username("moder").email("moder@mail.com").password("encryptedPass").build());
+        UserRoleEntity moderRole = new UserRoleEntity(null, Role.MODERATOR);
+        moderRole.setUser(moder);
+        testEntityManager.persist(moderRole);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertEquals(Role.MODERATOR, userRepository.findLoginViewByUsername("moder").orElseThrow().getRole());
+        List<UsernameView> usernameViews = userRepository.findAllUsernameViewsById(List.of(moder.getId()));
+        assertEquals(1, usernameViews.size());
+        assertEquals(moder.getId(), usernameViews.get(0).getId());
+        assertEquals("moder", usernameViews.get(0).getUsername());
+    }
+
+    /**
+     * Creates a database with the schema created by Hibernate for the first release.
+     * @param name Name of the in-memory database.
+     * @return Data source of the database.
+     */
+    private static DriverManagerDataSource createBaselineDatabase(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + H2_OPTIONS, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/hibernate-baseline.sql")).execute(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * Migrates the database like the application does, baselining it at version 1.
+     * @param dataSource Data source of the database.
+     */
+    private static void migrateWithBaseline(DriverManagerDataSource dataSource) {
+        Flyway baselineFlyway = Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
+        baselineFlyway.migrate();
+        List<String> versions = Arrays.stream(baselineFlyway.info().applied())
+                .map(info -> info.getVersion().getVersion())
+                .toList();
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), versions);
+    }
+
+    /**
+     * Finds the names of the unique constraints of the users.
+     * @param jdbcTemplate Template of the database.
+     * @return Sorted names of the unique constraints.
+     */
+    private static List<String> findUniqueConstraintNames(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList("SELECT constraint_name FROM information_schema.table_constraints "
+                + "WHERE table_name = 'users' AND constraint_type = 'UNIQUE' ORDER BY constraint_name", String.class);
+    }
+}
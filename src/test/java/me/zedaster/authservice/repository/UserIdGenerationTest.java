@@ -0,0 +1,72 @@
+package me.zedaster.authservice.repository;
+
+import me.zedaster.authservice.entity.PooledLoSequenceGenerator;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.entity.UserRoleEntity;
+import me.zedaster.authservice.model.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the IDs of {@link UserEntity} generated by {@link PooledLoSequenceGenerator}
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties." + PooledLoSequenceGenerator.ALLOCATION_SIZE_SETTING + "=3")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class UserIdGenerationTest {
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    /**
+     * Test that the IDs are reserved in blocks of the configured size and every sequence value starts a block.
+     */
+    @Test
+    public void idsAreReservedInBlocks() {
+        List<UserEntity> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(testEntityManager.persist(UserEntity.builder()
+                    .username("user" + i).email("user" + i + "@mail.com").password("encryptedPass").build()));
+        }
+
+        // The IDs are assigned on persist, before the inserts are flushed
+        long firstId = users.get(0).getId();
+        for (int i = 1; i < users.size(); i++) {
+            assertEquals(firstId + i, users.get(i).getId());
+        }
+        // Two blocks are reserved (firstId and firstId + 3), so the next value starts the third one
+        assertEquals(firstId + 6, nextSequenceValue());
+    }
+
+    /**
+     * Test that the role of a user gets the ID of the user that is not inserted yet.
+     */
+    @Test
+    public void roleGetsIdOfNewUser() {
+        UserEntity user = testEntityManager.persist(UserEntity.builder()
+                .username("moder").email("moder@mail.com").password("encryptedPass").build());
+        UserRoleEntity role = new UserRoleEntity(null, Role.MODERATOR);
+        role.setUser(user);
+        testEntityManager.persist(role);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        UserEntity foundUser = testEntityManager.find(UserEntity.class, user.getId());
+        assertEquals(Role.MODERATOR, foundUser.getRole().getRole());
+        assertEquals(user.getId(), foundUser.getRole().getUserId());
+    }
+
+    private long nextSequenceValue() {
+        return ((Number) testEntityManager.getEntityManager()
+                .createNativeQuery("select next value for " + UserEntity.ID_SEQUENCE)
+                .getSingleResult()).longValue();
+    }
+}
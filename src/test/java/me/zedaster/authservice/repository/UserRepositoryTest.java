@@ -0,0 +1,91 @@
+package me.zedaster.authservice.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.entity.UserRoleEntity;
+import me.zedaster.authservice.model.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the login queries of {@link UserRepository}
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class UserRepositoryTest {
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        UserEntity user = testEntityManager.persist(UserEntity.builder()
+                .username("user").email("user@mail.com").password("encryptedPass").build());
+        UserEntity moder = testEntityManager.persist(UserEntity.builder()
+                .username("moder").email("moder@mail.com").password("encryptedPass").build());
+        UserRoleEntity moderRole = new UserRoleEntity(null, Role.MODERATOR);
+        moderRole.setUser(moder);
+        testEntityManager.persist(moderRole);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertNotNull(user.getId());
+    }
+
+    /**
+     * Test for finding a user with the default role by username. Only one statement must be executed.
+     */
+    @Test
+    public void findLoginViewByUsername() {
+        Optional<UserLoginView> view = userRepository.findLoginViewByUsername("user");
+
+        assertTrue(view.isPresent());
+        assertEquals("user@mail.com", view.get().getEmail());
+        assertEquals("encryptedPass", view.get().getPassword());
+        assertNull(view.get().getRole());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test for finding a user with a stored role by email. Only one statement must be executed.
+     */
+    @Test
+    public void findLoginViewByEmail() {
+        Optional<UserLoginView> view = userRepository.findLoginViewByEmail("moder@mail.com");
+
+        assertTrue(view.isPresent());
+        assertEquals("moder", view.get().getUsername());
+        assertEquals(Role.MODERATOR, view.get().getRole());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test for finding a user that doesn't exist
+     */
+    @Test
+    public void findNonExistentLoginView() {
+        assertTrue(userRepository.findLoginViewByUsername("user@mail.com").isEmpty());
+        assertTrue(userRepository.findLoginViewByEmail("user").isEmpty());
+    }
+}
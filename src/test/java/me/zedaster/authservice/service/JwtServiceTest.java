@@ -0,0 +1,341 @@
+package me.zedaster.authservice.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.zedaster.authservice.dto.TokenPayload;
+import me.zedaster.authservice.dto.auth.JwtPairDto;
+import me.zedaster.authservice.exception.JwtException;
+import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.model.TokenValidationResult;
+import me.zedaster.authservice.service.cache.AccessTokenCache;
+import me.zedaster.authservice.service.key.JwtKeyStore;
+import me.zedaster.authservice.repository.RevokedAccessTokenRepository;
+import me.zedaster.authservice.service.token.AccessTokenRevocationList;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link JwtService}
+ */
+@ActiveProfiles("test")
+@SpringBootTest(classes = {JwtService.class, JwtKeyStore.class, AccessTokenCache.class,
+        AccessTokenRevocationList.class}, properties = "jwt.refresh.legacy-accepted-until=2100-01-01T00:00:00Z")
+public class JwtServiceTest {
+    private static final String ACCESS_SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+
+    private static final String REFRESH_SECRET = "4267566B59703373367639792F423F4528482B4D6252655468576D5A71347468";
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private AccessTokenCache accessTokenCache;
+
+    @MockBean
+    private RefreshTokenStore refreshTokenStore;
+
+    @MockBean
+    private RevokedAccessTokenRepository revokedAccessTokenRepository;
+
+    /**
+     * Test for validating a freshly generated access token.
+     */
+    @Test
+    public void validateGeneratedAccessToken() {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        assertDoesNotThrow(() -> jwtService.validateAccessToken(pair.getAccessToken()));
+    }
+
+    /**
+     * Test for validating a refresh token as an access token. They are signed with different keys.
+     */
+    @Test
+    public void validateRefreshTokenAsAccessToken() {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        JwtException ex = assertThrows(JwtException.class,
+                () -> jwtService.validateAccessToken(pair.getRefreshToken()));
+        assertEquals("The access token is invalid!", ex.getMessage());
+    }
+
+    /**
+     * Test for refreshing the tokens several times with the same parser.
+     */
+    @Test
+    public void refreshTokenManyTimes() throws JwtException {
+        when(refreshTokenStore.consume(any(UUID.class), any(UUID.class))).thenReturn(true);
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.MODERATOR));
+        for (int i = 0; i < 3; i++) {
+            pair = jwtService.refreshToken(pair.getRefreshToken());
+            jwtService.validateAccessToken(pair.getAccessToken());
+        }
+    }
+
+    /**
+     * Test for refreshing the tokens. The new refresh token must be saved in the same family as the used one.
+     */
+    @Test
+    public void refreshTokenInSameFamily() throws JwtException {
+        when(refreshTokenStore.consume(any(UUID.class), any(UUID.class))).thenReturn(true);
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(6L, "rotated", Role.USER));
+        ArgumentCaptor<UUID> tokenIdCaptor = ArgumentCaptor.forClass(UUID.class);
+        ArgumentCaptor<UUID> familyIdCaptor = ArgumentCaptor.forClass(UUID.class);
+        verify(refreshTokenStore).save(tokenIdCaptor.capture(), familyIdCaptor.capture(), eq(6L), any(Instant.class));
+        clearInvocations(refreshTokenStore);
+
+        jwtService.refreshToken(pair.getRefreshToken());
+        verify(refreshTokenStore).consume(tokenIdCaptor.getValue(), familyIdCaptor.getValue());
+        verify(refreshTokenStore).save(any(UUID.class), eq(familyIdCaptor.getValue()), eq(6L), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with a used refresh token. No new tokens must be issued.
+     */
+    @Test
+    public void refreshWithUsedToken() {
+        when(refreshTokenStore.consume(any(UUID.class), any(UUID.class))).thenReturn(false);
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(7L, "reused", Role.USER));
+        clearInvocations(refreshTokenStore);
+
+        JwtException ex = assertThrows(JwtException.class, () -> jwtService.refreshToken(pair.getRefreshToken()));
+        assertEquals("The refresh token is invalid!", ex.getMessage());
+        verify(refreshTokenStore, never()).save(any(UUID.class), any(UUID.class), anyLong(), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with a refresh token issued before the rotation (without ID and family). It's
+     * exchanged once, and the new refresh token starts a new family.
+     */
+    @Test
+    public void refreshLegacyToken() throws JwtException {
+        when(refreshTokenStore.consumeLegacy(any(UUID.class), any(Instant.class))).thenReturn(true);
+        String refreshToken = createLegacyRefreshToken();
+
+        JwtPairDto pair = jwtService.refreshToken(refreshToken);
+
+        assertEquals(8L, jwtService.validateAccessToken(pair.getAccessToken()).getUserId());
+        verify(refreshTokenStore).consumeLegacy(eq(UUID.nameUUIDFromBytes(refreshToken.getBytes(UTF_8))),
+                any(Instant.class));
+        verify(refreshTokenStore, never()).consume(any(UUID.class), any(UUID.class));
+        verify(refreshTokenStore).save(any(UUID.class), any(UUID.class), eq(8L), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with a used refresh token issued before the rotation. No new tokens must be
+     * issued.
+     */
+    @Test
+    public void refreshUsedLegacyToken() {
+        when(refreshTokenStore.consumeLegacy(any(UUID.class), any(Instant.class))).thenReturn(false);
+
+        JwtException ex = assertThrows(JwtException.class, () -> jwtService.refreshToken(createLegacyRefreshToken()));
+        assertEquals("The refresh token is invalid!", ex.getMessage());
+        verify(refreshTokenStore, never()).save(any(UUID.class), any(UUID.class), anyLong(), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with a refresh token issued before the rotation after the legacy tokens are not
+     * accepted anymore.
+     */
+    @Test
+    public void refreshLegacyTokenAfterCutoff() {
+        AccessTokenCache cache = new AccessTokenCache(0);
+        JwtService cutoffJwtService = new JwtService(JwtKeyStore.fromSecrets(ACCESS_SECRET, REFRESH_SECRET, cache),
+                cache, refreshTokenStore, mock(AccessTokenRevocationList.class), Instant.now());
+
+        JwtException ex = assertThrows(JwtException.class,
+                () -> cutoffJwtService.refreshToken(createLegacyRefreshToken()));
+        assertEquals("The refresh token is invalid!", ex.getMessage());
+        verify(refreshTokenStore, never()).consumeLegacy(any(UUID.class), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with a refresh token that has an ID but no family. Only tokens without both are
+     * legacy ones.
+     */
+    @Test
+    public void refreshWithTokenWithoutFamily() {
+        String refreshToken = Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .claims(Map.of("sub", "8", "username", "legacy", "role", "USER"))
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(REFRESH_SECRET)))
+                .compact();
+
+        JwtException ex = assertThrows(JwtException.class, () -> jwtService.refreshToken(refreshToken));
+        assertEquals("The refresh token is invalid!", ex.getMessage());
+        verify(refreshTokenStore, never()).consume(any(UUID.class), any(UUID.class));
+        verify(refreshTokenStore, never()).consumeLegacy(any(UUID.class), any(Instant.class));
+    }
+
+    /**
+     * Test for refreshing the tokens with an access token.
+     */
+    @Test
+    public void refreshWithAccessToken() {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        JwtException ex = assertThrows(JwtException.class,
+                () -> jwtService.refreshToken(pair.getAccessToken()));
+        assertEquals("The refresh token is invalid!", ex.getMessage());
+    }
+
+    /**
+     * Test for validating the same access token twice. The second validation must be served by the cache.
+     */
+    @Test
+    public void validateAccessTokenTwice() throws JwtException {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(2L, "cached", Role.USER));
+        long hitsBefore = accessTokenCache.getStats().hitCount();
+
+        jwtService.validateAccessToken(pair.getAccessToken());
+        jwtService.validateAccessToken(pair.getAccessToken());
+
+        assertEquals(hitsBefore + 1, accessTokenCache.getStats().hitCount());
+        assertNotNull(accessTokenCache.getIfPresent(pair.getAccessToken()));
+    }
+
+    /**
+     * Test for validating an invalid access token. It must never get into the cache.
+     */
+    @Test
+    public void invalidAccessTokenIsNotCached() {
+        String invalidToken = jwtService.generateTokens(new TokenPayload(3L, "invalid", Role.USER)).getRefreshToken();
+
+        assertThrows(JwtException.class, () -> jwtService.validateAccessToken(invalidToken));
+        assertThrows(JwtException.class, () -> jwtService.validateAccessToken(invalidToken));
+        assertNull(accessTokenCache.getIfPresent(invalidToken));
+    }
+
+    /**
+     * Test for checking tokens without exceptions.
+     */
+    @Test
+    public void isAccessTokenValid() {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(4L, "checked", Role.USER));
+        assertTrue(jwtService.isAccessTokenValid(pair.getAccessToken()));
+        assertFalse(jwtService.isAccessTokenValid(pair.getRefreshToken()));
+        assertFalse(jwtService.isAccessTokenValid("not.a.token"));
+        assertFalse(jwtService.isAccessTokenValid(null));
+    }
+
+    /**
+     * Test for checking tokens with every status of the result.
+     */
+    @Test
+    public void checkAccessToken() {
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(5L, "checked", Role.MODERATOR));
+        String expiredToken = Jwts.builder()
+                .claims(Map.of("sub", "5", "username", "checked", "role", "MODERATOR"))
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET)))
+                .compact();
+
+        TokenValidationResult valid = jwtService.checkAccessToken(pair.getAccessToken());
+        assertEquals(TokenValidationResult.Status.VALID, valid.getStatus());
+        assertEquals(5L, valid.getPayload().getUserId());
+        assertEquals(Role.MODERATOR, valid.getPayload().getRole());
+        assertEquals(TokenValidationResult.Status.EXPIRED, jwtService.checkAccessToken(expiredToken).getStatus());
+        assertEquals(TokenValidationResult.Status.BAD_SIGNATURE,
+                jwtService.checkAccessToken(pair.getRefreshToken()).getStatus());
+        assertEquals(TokenValidationResult.Status.MALFORMED, jwtService.checkAccessToken("not.a.token").getStatus());
+        assertEquals(TokenValidationResult.Status.MALFORMED, jwtService.checkAccessToken("garbage").getStatus());
+        assertEquals(TokenValidationResult.Status.MALFORMED, jwtService.checkAccessToken(null).getStatus());
+    }
+
+    /**
+     * Test for the exception of an invalid token. It must not have a stack trace.
+     */
+    @Test
+    public void invalidTokenExceptionIsStackless() {
+        JwtException ex = assertThrows(JwtException.class, () -> jwtService.validateAccessToken("garbage"));
+        assertEquals(0, ex.getStackTrace().length);
+    }
+
+    /**
+     * Test for revoking an access token. Only the revoked token must become invalid, even if it is in the cache.
+     */
+    @Test
+    public void revokeAccessToken() throws JwtException {
+        JwtPairDto revokedPair = jwtService.generateTokens(new TokenPayload(9L, "revoked", Role.USER));
+        JwtPairDto otherPair = jwtService.generateTokens(new TokenPayload(9L, "revoked", Role.USER));
+        jwtService.validateAccessToken(revokedPair.getAccessToken());
+
+        jwtService.revokeAccessToken(revokedPair.getAccessToken());
+
+        assertEquals(TokenValidationResult.Status.REVOKED,
+                jwtService.checkAccessToken(revokedPair.getAccessToken()).getStatus());
+        assertTrue(jwtService.isAccessTokenValid(otherPair.getAccessToken()));
+        verify(revokedAccessTokenRepository, times(1)).save(any());
+        JwtException ex = assertThrows(JwtException.class,
+                () -> jwtService.revokeAccessToken(revokedPair.getAccessToken()));
+        assertEquals("The access token is invalid!", ex.getMessage());
+    }
+
+    /**
+     * Test for revoking an access token without ID. It can't be revoked, but it expires soon.
+     */
+    @Test
+    public void revokeAccessTokenWithoutId() {
+        String accessToken = Jwts.builder()
+                .claims(Map.of("sub", "10", "username", "legacy", "role", "USER"))
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(ACCESS_SECRET)))
+                .compact();
+
+        JwtException ex = assertThrows(JwtException.class, () -> jwtService.revokeAccessToken(accessToken));
+        assertEquals("The access token can't be revoked!", ex.getMessage());
+        verify(revokedAccessTokenRepository, never()).save(any());
+    }
+
+    /**
+     * Test for the timers of the verification. Every check must be recorded with its outcome.
+     */
+    @Test
+    public void recordVerifyOutcomes() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        jwtService.bindTo(meterRegistry);
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(11L, "measured", Role.USER));
+
+        jwtService.checkAccessToken(pair.getAccessToken());
+        jwtService.checkAccessToken(pair.getAccessToken());
+        jwtService.checkAccessToken(pair.getRefreshToken());
+        jwtService.checkAccessToken("garbage");
+
+        assertEquals(1, meterRegistry.get("auth.token.issue").timer().count());
+        assertEquals(2, meterRegistry.get("auth.token.verify").tag("outcome", "valid").timer().count());
+        assertEquals(1, meterRegistry.get("auth.token.verify").tag("outcome", "bad_signature").timer().count());
+        assertEquals(1, meterRegistry.get("auth.token.verify").tag("outcome", "malformed").timer().count());
+        assertEquals(0, meterRegistry.get("auth.token.verify").tag("outcome", "expired").timer().count());
+    }
+
+    /**
+     * Creates a refresh token as it was issued before the rotation, without ID and family.
+     * @return Refresh token.
+     */
+    private static String createLegacyRefreshToken() {
+        return Jwts.builder()
+                .claims(Map.of("sub", "8", "username", "legacy", "role", "USER"))
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(REFRESH_SECRET)))
+                .compact();
+    }
+}
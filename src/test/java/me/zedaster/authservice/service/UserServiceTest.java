@@ -1,33 +1,53 @@
 package me.zedaster.authservice.service;
 
+import me.zedaster.authservice.dto.auth.NewUserDto;
 import me.zedaster.authservice.dto.auth.UserCredentialsDto;
+import me.zedaster.authservice.dto.profile.UsernamesDto;
 import me.zedaster.authservice.entity.UserEntity;
 import me.zedaster.authservice.entity.UserRoleEntity;
+import me.zedaster.authservice.exception.AuthException;
 import me.zedaster.authservice.exception.ProfileException;
 import me.zedaster.authservice.exception.UserIdException;
 import me.zedaster.authservice.model.Role;
 import me.zedaster.authservice.model.User;
+import me.zedaster.authservice.repository.UserLoginView;
 import me.zedaster.authservice.repository.UserRepository;
+import me.zedaster.authservice.repository.UsernameView;
+import me.zedaster.authservice.service.cache.UsernameCache;
 import me.zedaster.authservice.service.encoder.PasswordEncoder;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
  * Tests for {@link UserService}
  */
-@SpringBootTest(classes = {UserService.class})
+@SpringBootTest(classes = {UserService.class, UsernameCache.class})
 public class UserServiceTest {
-    // Now there are only tests for UserService#getUser, UserService#getUsername, UserService#changeUsername
+    // Now there are only tests for UserService#getUser, UserService#createUser, UserService#getUsername,
+    // UserService#changeUsername
 
     @Autowired
     private UserService userService;
@@ -38,18 +58,27 @@ public class UserServiceTest {
     @MockBean
     private PasswordEncoder passwordEncoder;
 
+    @MockBean
+    private PasswordUpgradeService passwordUpgradeService;
+
+    @MockBean
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private UsernameCache usernameCache;
+
+    @BeforeEach
+    public void clearCache() {
+        usernameCache.invalidateAll();
+    }
+
     /**
      * Test for getting user with right credentials
      */
     @Test
     public void getExistingUserWithRightPassword() {
-        UserEntity fakeEntity = mock(UserEntity.class);
-        when(fakeEntity.getId()).thenReturn(1L);
-        when(fakeEntity.getUsername()).thenReturn("user");
-        when(fakeEntity.getPassword()).thenReturn("encryptedPass");
-        when(fakeEntity.getEmail()).thenReturn("user@mail.com");
-        when(fakeEntity.getRole()).thenReturn(null);
-        when(userRepository.findByUsernameOrEmail("user", "user")).thenReturn(Optional.of(fakeEntity));
+        UserLoginView fakeView = new UserLoginView(1L, "user", "user@mail.com", "encryptedPass", null);
+        when(userRepository.findLoginViewByUsername("user")).thenReturn(Optional.of(fakeView));
         when(passwordEncoder.matches("rawPass", "encryptedPass")).thenReturn(true);
 
         Optional<User> user = userService.getUser(new UserCredentialsDto("user", "rawPass"));
@@ -60,18 +89,44 @@ public class UserServiceTest {
         assertEquals(Role.USER, user.get().getRole());
     }
 
+    /**
+     * Test for getting user with right credentials by email
+     */
+    @Test
+    public void getExistingUserByEmail() {
+        UserLoginView fakeView = new UserLoginView(1L, "user", "user@mail.com", "encryptedPass", null);
+        when(userRepository.findLoginViewByEmail("user@mail.com")).thenReturn(Optional.of(fakeView));
+        when(passwordEncoder.matches("rawPass", "encryptedPass")).thenReturn(true);
+
+        Optional<User> user = userService.getUser(new UserCredentialsDto("user@mail.com", "rawPass"));
+        Assertions.assertTrue(user.isPresent());
+        assertEquals(1L, user.get().getId());
+        verify(userRepository, never()).findLoginViewByUsername(anyString());
+    }
+
+    /**
+     * Test for getting user with right credentials and an outdated password hash
+     */
+    @Test
+    public void getExistingUserWithOutdatedHash() {
+        UserLoginView fakeView = new UserLoginView(1L, "user", "user@mail.com", "oldHash", null);
+        when(userRepository.findLoginViewByUsername("user")).thenReturn(Optional.of(fakeView));
+        when(passwordEncoder.matches("rawPass", "oldHash")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("oldHash")).thenReturn(true);
+
+        Optional<User> user = userService.getUser(new UserCredentialsDto("user", "rawPass"));
+        Assertions.assertTrue(user.isPresent());
+        verify(passwordUpgradeService, times(1)).upgradeAsync(1L, "rawPass", "oldHash");
+        verify(passwordEncoder, never()).encode(anyString());
+    }
+
     /**
      * Test for getting user with right credentials and non-default role
      */
     @Test
     public void getExistingUserWithCustomRole() {
-        UserEntity fakeEntity = mock(UserEntity.class);
-        when(fakeEntity.getId()).thenReturn(1L);
-        when(fakeEntity.getUsername()).thenReturn("moder");
-        when(fakeEntity.getPassword()).thenReturn("encryptedPass");
-        when(fakeEntity.getEmail()).thenReturn("moder@mail.com");
-        when(fakeEntity.getRole()).thenReturn(new UserRoleEntity(1L, Role.MODERATOR));
-        when(userRepository.findByUsernameOrEmail("moder", "moder")).thenReturn(Optional.of(fakeEntity));
+        UserLoginView fakeView = new UserLoginView(1L, "moder", "moder@mail.com", "encryptedPass", Role.MODERATOR);
+        when(userRepository.findLoginViewByUsername("moder")).thenReturn(Optional.of(fakeView));
         when(passwordEncoder.matches("rawPass", "encryptedPass")).thenReturn(true);
 
         Optional<User> user = userService.getUser(new UserCredentialsDto("moder", "rawPass"));
@@ -87,17 +142,15 @@ public class UserServiceTest {
      */
     @Test
     public void getExistentUserWithWrongPassword() {
-        UserEntity fakeEntity = mock(UserEntity.class);
-        when(fakeEntity.getId()).thenReturn(1L);
-        when(fakeEntity.getUsername()).thenReturn("user");
-        when(fakeEntity.getPassword()).thenReturn("encryptedPass");
-        when(userRepository.findByUsernameOrEmail("user", "user")).thenReturn(Optional.of(fakeEntity));
+        UserLoginView fakeView = new UserLoginView(1L, "user", "user@mail.com", "encryptedPass", null);
+        when(userRepository.findLoginViewByUsername("user")).thenReturn(Optional.of(fakeView));
         when(passwordEncoder.matches("wrongPass", "encryptedPass")).thenReturn(false);
 
         Optional<User> user = userService.getUser(new UserCredentialsDto("user", "wrongPass"));
 
-        verify(userRepository, times(1)).findByUsernameOrEmail(anyString(), anyString());
+        verify(userRepository, times(1)).findLoginViewByUsername(anyString());
         verify(passwordEncoder, times(1)).matches(anyString(), anyString());
+        verify(passwordUpgradeService, never()).upgradeAsync(anyLong(), anyString(), anyString());
         Assertions.assertTrue(user.isEmpty());
     }
 
@@ -106,15 +159,79 @@ public class UserServiceTest {
      */
     @Test
     public void getNonExistentUser() {
-        when(userRepository.findByUsernameOrEmail("user", "user")).thenReturn(Optional.empty());
+        when(userRepository.findLoginViewByUsername("user")).thenReturn(Optional.empty());
 
         Optional<User> user = userService.getUser(new UserCredentialsDto("user", "rawPass"));
 
-        verify(userRepository, times(1)).findByUsernameOrEmail(anyString(), anyString());
+        verify(userRepository, times(1)).findLoginViewByUsername(anyString());
         verify(passwordEncoder, never()).matches(anyString(), anyString());
         Assertions.assertTrue(user.isEmpty());
     }
 
+    /**
+     * Test for creating a user when the insert violates the unique constraint on the username
+     */
+    @Test
+    public void createUserWithTakenUsername() {
+        when(passwordEncoder.encode("Password1!")).thenReturn("encryptedPass");
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("Duplicate key",
+                new ConstraintViolationException("Duplicate key", null, "USERS_USERNAME_KEY")));
+
+        AuthException ex = assertThrows(AuthException.class,
+                () -> userService.createUser(new NewUserDto("user", "Password1!", "user@mail.com")));
+        assertEquals("User with the same username already exists!", ex.getMessage());
+        verify(userRepository, never()).existsByUsername(anyString());
+    }
+
+    /**
+     * Test for creating a user when the insert violates the unique constraint on the email
+     */
+    @Test
+    public void createUserWithTakenEmail() {
+        when(passwordEncoder.encode("Password1!")).thenReturn("encryptedPass");
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("Duplicate key",
+                new ConstraintViolationException("Duplicate key", null, "users_email_key")));
+
+        AuthException ex = assertThrows(AuthException.class,
+                () -> userService.createUser(new NewUserDto("user", "Password1!", "user@mail.com")));
+        assertEquals("User with the same email already exists!", ex.getMessage());
+    }
+
+    /**
+     * Test for creating a user when the violated unique constraint has a name generated by Hibernate. The taken field
+     * must be found by the queries.
+     */
+    @Test
+    public void createUserWithTakenEmailAndGeneratedConstraintName() {
+        when(passwordEncoder.encode("Password1!")).thenReturn("encryptedPass");
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("Duplicate key",
+                new ConstraintViolationException("Duplicate key", null, "uk6dotkott2kjsp8vw4d0m25fb7")));
+        when(userRepository.existsByUsername("user")).thenReturn(false);
+        when(userRepository.existsByEmail("user@mail.com")).thenReturn(true);
+
+        AuthException ex = assertThrows(AuthException.class,
+                () -> userService.createUser(new NewUserDto("user", "Password1!", "user@mail.com")));
+        assertEquals("User with the same email already exists!", ex.getMessage());
+    }
+
+    /**
+     * Test for creating a user when an unknown constraint is violated and the username and email are free. The
+     * original exception must be thrown.
+     */
+    @Test
+    public void createUserWithUnknownConstraintViolation() {
+        when(passwordEncoder.encode("Password1!")).thenReturn("encryptedPass");
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Violation",
+                new ConstraintViolationException("Violation", null, "unknown_constraint"));
+        when(userRepository.save(any())).thenThrow(violation);
+
+        DataIntegrityViolationException ex = assertThrows(DataIntegrityViolationException.class,
+                () -> userService.createUser(new NewUserDto("user", "Password1!", "user@mail.com")));
+        assertSame(violation, ex);
+        verify(userRepository, times(1)).existsByUsername("user");
+        verify(userRepository, times(1)).existsByEmail("user@mail.com");
+    }
+
     /**
      * Test for getting user with default role by right ID
      */
@@ -184,14 +301,26 @@ public class UserServiceTest {
      */
     @Test
     public void getUsernameByRightId() {
-        UserEntity fakeEntity = mock(UserEntity.class);
-        when(fakeEntity.getUsername()).thenReturn("barbra.streisand");
-        when(userRepository.findById(1L)).thenReturn(Optional.of(fakeEntity));
+        when(userRepository.findUsernameById(1L)).thenReturn(Optional.of("barbra.streisand"));
 
         String username = userService.getUsername(1L);
         assertEquals("barbra.streisand", username);
     }
 
+    /**
+     * Test for getting username by the same userId twice. The second time it must be taken from the cache.
+     */
+    @Test
+    public void getCachedUsername() {
+        when(userRepository.findUsernameById(1L)).thenReturn(Optional.of("barbra.streisand"));
+
+        userService.getUsername(1L);
+        String username = userService.getUsername(1L);
+
+        assertEquals("barbra.streisand", username);
+        verify(userRepository, times(1)).findUsernameById(1L);
+    }
+
     /**
      * Test for getting username by incorrect userId
      */
@@ -200,7 +329,7 @@ public class UserServiceTest {
         UserIdException ex = assertThrows(UserIdException.class,
                 () -> userService.getUsername(0L));
         assertEquals("User ID 0 is incorrect!", ex.getMessage());
-        verify(userRepository, never()).findById(anyLong());
+        verify(userRepository, never()).findUsernameById(anyLong());
     }
 
     /**
@@ -208,7 +337,7 @@ public class UserServiceTest {
      */
     @Test
     public void getUsernameByNonExistentId() {
-        when(userRepository.findById(100L)).thenReturn(Optional.empty());
+        when(userRepository.findUsernameById(100L)).thenReturn(Optional.empty());
 
         UserIdException ex = assertThrows(UserIdException.class, () ->
                 userService.getUsername(100L));
@@ -220,10 +349,26 @@ public class UserServiceTest {
      */
     @Test
     public void getUsernamesByRightIds() {
-        when(userRepository.findAllUsernamesById(List.of(1L, 2L))).thenReturn(List.of("barbra.streisand", "john.doe"));
+        when(userRepository.findAllUsernameViewsById(anyCollection())).thenReturn(List.of(
+                new UsernameView(2L, "john.doe"), new UsernameView(1L, "barbra.streisand")));
+
+        List<String> usernames = userService.getUsernames(List.of(1L, 2L));
+        assertEquals(List.of("barbra.streisand", "john.doe"), usernames);
+    }
+
+    /**
+     * Test for getting usernames when some of them are cached. Only the missing ones must be loaded.
+     */
+    @Test
+    public void getUsernamesPartiallyCached() {
+        when(userRepository.findUsernameById(1L)).thenReturn(Optional.of("barbra.streisand"));
+        when(userRepository.findAllUsernameViewsById(List.of(2L))).thenReturn(List.of(new UsernameView(2L, "john.doe")));
+        userService.getUsername(1L);
 
         List<String> usernames = userService.getUsernames(List.of(1L, 2L));
+
         assertEquals(List.of("barbra.streisand", "john.doe"), usernames);
+        verify(userRepository, times(1)).findAllUsernameViewsById(List.of(2L));
     }
 
     /**
@@ -234,7 +379,7 @@ public class UserServiceTest {
         UserIdException ex = assertThrows(UserIdException.class,
                 () -> userService.getUsernames(List.of(2L, 0L)));
         assertEquals("User ID 0 is incorrect!", ex.getMessage());
-        verify(userRepository, never()).findAllUsernamesById(any());
+        verify(userRepository, never()).findAllUsernameViewsById(any());
     }
 
     /**
@@ -242,13 +387,53 @@ public class UserServiceTest {
      */
     @Test
     public void getUsernamesByIdsWithNonExistentOne() {
-        when(userRepository.findAllUsernamesById(List.of(100L, 200L))).thenReturn(List.of("barbra.streisand"));
+        when(userRepository.findAllUsernameViewsById(anyCollection()))
+                .thenReturn(List.of(new UsernameView(100L, "barbra.streisand")));
 
         UserIdException ex = assertThrows(UserIdException.class,
                 () -> userService.getUsernames(List.of(100L, 200L)));
         assertEquals("Some users not found!", ex.getMessage());
     }
 
+    /**
+     * Test for resolving usernames with duplicate, incorrect and non-existent userIds. They must not fail the batch.
+     */
+    @Test
+    public void resolveUsernames() {
+        when(userRepository.findAllUsernameViewsById(anyCollection())).thenReturn(List.of(
+                new UsernameView(1L, "barbra.streisand"), new UsernameView(2L, "john.doe")));
+
+        UsernamesDto result = userService.resolveUsernames(List.of(2L, 100L, 1L, 2L, 0L));
+
+        assertEquals(List.of(2L, 1L), List.copyOf(result.getUsernames().keySet()));
+        assertEquals("john.doe", result.getUsernames().get(2L));
+        assertEquals("barbra.streisand", result.getUsernames().get(1L));
+        assertEquals(List.of(100L, 0L), result.getMissingIds());
+        verify(userRepository, times(1)).findAllUsernameViewsById(anyCollection());
+    }
+
+    /**
+     * Test for resolving usernames of many users. They must be loaded in chunks of the same size.
+     */
+    @Test
+    public void resolveUsernamesInChunks() {
+        when(userRepository.findAllUsernameViewsById(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id % 2 == 0).map(id -> new UsernameView(id, "user" + id)).toList();
+        });
+        List<Long> userIds = LongStream.rangeClosed(1, 1200).boxed().collect(Collectors.toList());
+        userIds.add(2L);
+
+        List<UsernamesDto> chunks = new ArrayList<>();
+        userService.resolveUsernamesInChunks(userIds, chunks::add);
+
+        assertEquals(3, chunks.size());
+        assertEquals(256, chunks.get(0).getUsernames().size());
+        assertEquals(256, chunks.get(0).getMissingIds().size());
+        assertEquals(88, chunks.get(2).getUsernames().size());
+        assertEquals("user2", chunks.get(0).getUsernames().get(2L));
+        verify(userRepository, times(3)).findAllUsernameViewsById(anyCollection());
+    }
 
     /**
      * Test for successful changing of the username
@@ -264,6 +449,49 @@ public class UserServiceTest {
         verify(userRepository, times(1)).existsByUsername("newname");
         verify(fakeEntity, times(1)).setUsername("newname");
         verify(userRepository, times(1)).save(same(fakeEntity));
+        verify(refreshTokenStore, times(1)).revokeAll(1L);
+    }
+
+    /**
+     * Test for getting the username after it was changed. The old username must not be taken from the cache.
+     */
+    @Test
+    public void getUsernameAfterChange() throws Exception {
+        when(userRepository.findUsernameById(1L)).thenReturn(Optional.of("oldname"), Optional.of("newname"));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(mock(UserEntity.class)));
+        userService.getUsername(1L);
+
+        userService.changeUsername(1L, "newname");
+
+        assertEquals("newname", userService.getUsername(1L));
+    }
+
+    /**
+     * Test for the rename that is committed while the old username is loaded. The loaded old username must not be put
+     * back to the cache after the invalidation.
+     */
+    @Test
+    public void getUsernameDuringChange() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch renameCommitted = new CountDownLatch(1);
+        when(userRepository.findUsernameById(1L))
+                .thenAnswer(invocation -> {
+                    // The old row is read before the rename is committed
+                    loadStarted.countDown();
+                    renameCommitted.await(5, TimeUnit.SECONDS);
+                    return Optional.of("oldname");
+                })
+                .thenReturn(Optional.of("newname"));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(mock(UserEntity.class)));
+
+        CompletableFuture<String> staleRead = CompletableFuture.supplyAsync(() -> userService.getUsername(1L));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        // There is no transaction in the test, so the cache is invalidated right away like after the commit
+        userService.changeUsername(1L, "newname");
+        renameCommitted.countDown();
+
+        assertEquals("oldname", staleRead.get(5, TimeUnit.SECONDS));
+        assertEquals("newname", userService.getUsername(1L));
     }
 
     /**
@@ -278,6 +506,7 @@ public class UserServiceTest {
         assertEquals("The username is already taken!", ex.getMessage());
         verify(userRepository, never()).findById(anyLong());
         verify(userRepository, never()).save(any());
+        verify(refreshTokenStore, never()).revokeAll(anyLong());
     }
 
     /**
@@ -319,6 +548,7 @@ public class UserServiceTest {
 
         verify(fakeEntity, times(1)).setPassword("NewHash");
         verify(userRepository, times(1)).save(same(fakeEntity));
+        verify(refreshTokenStore, times(1)).revokeAll(1L);
     }
 
     /**
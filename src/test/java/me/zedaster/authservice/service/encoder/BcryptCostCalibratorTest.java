@@ -0,0 +1,40 @@
+package me.zedaster.authservice.service.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link BcryptCostCalibrator}
+ */
+public class BcryptCostCalibratorTest {
+    /**
+     * Test for calibrating with a budget that fits every cost.
+     */
+    @Test
+    public void calibrateWithBigBudget() {
+        BcryptCostCalibrator calibrator = new BcryptCostCalibrator(Duration.ofSeconds(10), 4, 6, 1);
+        assertEquals(6, calibrator.calibrate());
+    }
+
+    /**
+     * Test for calibrating with a budget that fits no cost.
+     */
+    @Test
+    public void calibrateWithZeroBudget() {
+        BcryptCostCalibrator calibrator = new BcryptCostCalibrator(Duration.ZERO, 4, 6, 1);
+        assertEquals(4, calibrator.calibrate());
+    }
+
+    /**
+     * Test for creating the calibrator with incorrect range of costs.
+     */
+    @Test
+    public void incorrectRange() {
+        assertThrows(IllegalArgumentException.class, () -> new BcryptCostCalibrator(Duration.ZERO, 3, 6, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BcryptCostCalibrator(Duration.ZERO, 7, 6, 1));
+    }
+}
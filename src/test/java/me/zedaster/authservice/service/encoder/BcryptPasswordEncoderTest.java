@@ -0,0 +1,49 @@
+package me.zedaster.authservice.service.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link BcryptPasswordEncoder}
+ */
+public class BcryptPasswordEncoderTest {
+    private final BcryptPasswordEncoder encoder = new BcryptPasswordEncoder(5);
+
+    /**
+     * Test for encoding and matching the password.
+     */
+    @Test
+    public void encodeAndMatch() {
+        String hash = encoder.encode("Password1!");
+        assertTrue(encoder.matches("Password1!", hash));
+        assertFalse(encoder.matches("Password2!", hash));
+    }
+
+    /**
+     * Test for upgrading a hash with the current cost.
+     */
+    @Test
+    public void noUpgradeForCurrentCost() {
+        assertFalse(encoder.upgradeEncoding(encoder.encode("Password1!")));
+    }
+
+    /**
+     * Test for upgrading a hash with a lower cost.
+     */
+    @Test
+    public void upgradeForLowerCost() {
+        String hash = BCrypt.hashpw("Password1!", BCrypt.gensalt(encoder.getStrength() - 1));
+        assertTrue(encoder.upgradeEncoding(hash));
+    }
+
+    /**
+     * Test for upgrading a hash that isn't BCrypt.
+     */
+    @Test
+    public void noUpgradeForUnknownHash() {
+        assertFalse(encoder.upgradeEncoding("plain"));
+        assertFalse(encoder.upgradeEncoding(""));
+    }
+}
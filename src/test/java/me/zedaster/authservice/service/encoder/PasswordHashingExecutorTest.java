@@ -0,0 +1,84 @@
+package me.zedaster.authservice.service.encoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.zedaster.authservice.exception.OverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link PasswordHashingExecutor}
+ */
+public class PasswordHashingExecutorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 3, meterRegistry);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Test for getting the result of the task.
+     */
+    @Test
+    public void executeTask() {
+        assertEquals("hash", executor.execute(() -> "hash"));
+    }
+
+    /**
+     * Test for rethrowing the runtime exception of the task.
+     */
+    @Test
+    public void executeFailingTask() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> executor.execute(() -> {
+            throw new IllegalArgumentException("rawPassword cannot be null");
+        }));
+        assertEquals("rawPassword cannot be null", ex.getMessage());
+    }
+
+    /**
+     * Test for rejecting the task when the only thread is busy and the queue is full.
+     */
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> executor.execute(() -> "second"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueSize() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getQueueSize());
+
+        OverloadedException ex = assertThrows(OverloadedException.class, () -> executor.execute(() -> "third"));
+        assertEquals(3, ex.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
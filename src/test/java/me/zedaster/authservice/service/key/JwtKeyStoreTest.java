@@ -0,0 +1,207 @@
+package me.zedaster.authservice.service.key;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import me.zedaster.authservice.dto.TokenPayload;
+import me.zedaster.authservice.dto.auth.JwtPairDto;
+import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.model.TokenValidationResult;
+import me.zedaster.authservice.service.JwtService;
+import me.zedaster.authservice.service.cache.AccessTokenCache;
+import me.zedaster.authservice.service.token.AccessTokenRevocationList;
+import me.zedaster.authservice.service.token.RefreshTokenStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link JwtKeyStore} and the key rotation in {@link JwtService}
+ */
+public class JwtKeyStoreTest {
+    private static final String DEFAULT_SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+
+    private static final String REFRESH_SECRET = "4267566B59703373367639792F423F4528482B4D6252655468576D5A71347468";
+
+    private final String firstSecret = newSecret();
+
+    private final String secondSecret = newSecret();
+
+    @TempDir
+    private Path tempDir;
+
+    private Path keysFile;
+
+    private JwtKeyStore keyStore;
+
+    private JwtService jwtService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        keysFile = tempDir.resolve("jwt-keys.properties");
+        writeKeys("access.current=first\naccess.keys.first=%s\n".formatted(firstSecret));
+        AccessTokenCache accessTokenCache = new AccessTokenCache(1000);
+        keyStore = new JwtKeyStore(DEFAULT_SECRET, REFRESH_SECRET, keysFile.toString(), accessTokenCache);
+        RefreshTokenStore refreshTokenStore = mock(RefreshTokenStore.class);
+        when(refreshTokenStore.consume(any(UUID.class), any(UUID.class))).thenReturn(true);
+        jwtService = new JwtService(keyStore, accessTokenCache, refreshTokenStore,
+                mock(AccessTokenRevocationList.class), Instant.EPOCH);
+    }
+
+    /**
+     * Test for rotating the current key. Tokens of the previous key must stay valid until the key is removed.
+     */
+    @Test
+    public void rotateKey() throws IOException {
+        JwtPairDto firstPair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        assertTrue(jwtService.isAccessTokenValid(firstPair.getAccessToken()));
+
+        writeKeys("access.current=second\naccess.keys.first=%s\naccess.keys.second=%s\n"
+                .formatted(firstSecret, secondSecret));
+        keyStore.reloadIfChanged();
+        JwtPairDto secondPair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+
+        assertEquals("second", keyStore.getAccessKeys().getCurrentKeyId());
+        assertTrue(jwtService.isAccessTokenValid(firstPair.getAccessToken()));
+        assertTrue(jwtService.isAccessTokenValid(secondPair.getAccessToken()));
+
+        writeKeys("access.current=second\naccess.keys.second=%s\n".formatted(secondSecret));
+        keyStore.reloadIfChanged();
+
+        assertEquals(TokenValidationResult.Status.BAD_SIGNATURE,
+                jwtService.checkAccessToken(firstPair.getAccessToken()).getStatus());
+        assertTrue(jwtService.isAccessTokenValid(secondPair.getAccessToken()));
+    }
+
+    /**
+     * Test for verifying a token without the key ID. It was issued before the key ring, so the default key is used.
+     */
+    @Test
+    public void verifyTokenWithoutKeyId() {
+        String token = Jwts.builder()
+                .claim("sub", "1")
+                .claim("username", "user")
+                .claim("role", "USER")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(DEFAULT_SECRET)))
+                .compact();
+
+        assertTrue(jwtService.isAccessTokenValid(token));
+    }
+
+    /**
+     * Test for reloading an invalid file. The previous keys must be kept.
+     */
+    @Test
+    public void reloadInvalidFile() throws IOException {
+        writeKeys("access.current=missing\naccess.keys.first=%s\n".formatted(firstSecret));
+        keyStore.reloadIfChanged();
+
+        assertEquals("first", keyStore.getAccessKeys().getCurrentKeyId());
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        assertTrue(jwtService.isAccessTokenValid(pair.getAccessToken()));
+    }
+
+    /**
+     * Test for the refresh keys that are not in the file. The default key must be current.
+     */
+    @Test
+    public void defaultRefreshKey() throws Exception {
+        assertEquals(JwtKeyStore.DEFAULT_KEY_ID, keyStore.getRefreshKeys().getCurrentKeyId());
+        JwtPairDto pair = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER));
+        jwtService.refreshToken(pair.getRefreshToken());
+    }
+
+    /**
+     * Test for signing the access tokens with RS256. They must be verifiable with the public key from the JWKS.
+     */
+    @Test
+    public void signWithRs256() throws Exception {
+        verifyAsymmetricKeys("RS256", "RSA");
+    }
+
+    /**
+     * Test for signing the access tokens with EdDSA. They must be verifiable with the public key from the JWKS.
+     */
+    @Test
+    public void signWithEdDsa() throws Exception {
+        verifyAsymmetricKeys("EdDSA", "Ed25519");
+    }
+
+    /**
+     * Test for the JWKS in HMAC mode. The secret keys must never be published.
+     */
+    @Test
+    public void emptyJwksForHmac() {
+        assertEquals("{\"keys\":[]}", new String(keyStore.getJwks().getJson()));
+    }
+
+    private void verifyAsymmetricKeys(String algorithm, String keyAlgorithm) throws Exception {
+        String hmacToken = Jwts.builder()
+                .claim("sub", "1")
+                .claim("username", "user")
+                .claim("role", "USER")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(DEFAULT_SECRET)))
+                .compact();
+        KeyPair previous = KeyPairGenerator.getInstance(keyAlgorithm).generateKeyPair();
+        KeyPair current = KeyPairGenerator.getInstance(keyAlgorithm).generateKeyPair();
+        writeKeys(("access.algorithm=%s\naccess.current=current\naccess.keys.current=%s\n" +
+                "access.public-keys.current=%s\naccess.public-keys.previous=%s\n").formatted(
+                algorithm, encode(current.getPrivate()), encode(current.getPublic()), encode(previous.getPublic())));
+        keyStore.reloadIfChanged();
+
+        String accessToken = jwtService.generateTokens(new TokenPayload(1L, "user", Role.USER)).getAccessToken();
+
+        Jws<Claims> jws = Jwts.parser().verifyWith(current.getPublic()).build().parseSignedClaims(accessToken);
+        assertEquals(algorithm, jws.getHeader().getAlgorithm());
+        assertEquals("current", jws.getHeader().getKeyId());
+        assertTrue(jwtService.isAccessTokenValid(accessToken));
+        // Tokens of the default HMAC secret are still valid
+        assertTrue(jwtService.isAccessTokenValid(hmacToken));
+
+        String jwks = new String(keyStore.getJwks().getJson());
+        assertTrue(jwks.contains("\"kid\":\"current\""));
+        assertTrue(jwks.contains("\"kid\":\"previous\""));
+        assertFalse(jwks.contains("\"kid\":\"default\""));
+        assertFalse(jwks.contains("\"d\""));
+    }
+
+    private static String encode(Key key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+
+    private void writeKeys(String content) throws IOException {
+        // The modification time must change even if the file is rewritten within the same second
+        FileTime previousTime = Files.exists(keysFile) ? Files.getLastModifiedTime(keysFile) : FileTime.fromMillis(0);
+        Files.writeString(keysFile, content);
+        Files.setLastModifiedTime(keysFile, FileTime.fromMillis(previousTime.toMillis() + 1000));
+    }
+
+    private static String newSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return Encoders.BASE64.encode(secret);
+    }
+}
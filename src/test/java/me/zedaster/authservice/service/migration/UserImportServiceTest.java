@@ -0,0 +1,164 @@
+package me.zedaster.authservice.service.migration;
+
+import me.zedaster.authservice.dto.migration.ImportProblemDto;
+import me.zedaster.authservice.dto.migration.ImportReportDto;
+import me.zedaster.authservice.entity.UserEntity;
+import me.zedaster.authservice.model.ImportProblemType;
+import me.zedaster.authservice.model.Role;
+import me.zedaster.authservice.repository.UserLoginView;
+import me.zedaster.authservice.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link UserImportService}
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = {"user-import.batch-size=2", "user-import.max-reported-problems=3"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class,
+        JdbcTemplateAutoConfiguration.class})
+@Import(UserImportService.class)
+// Every batch is committed by the service itself
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserImportServiceTest {
+    private static final String PASSWORD_HASH = BCrypt.hashpw("Password1", BCrypt.gensalt(4));
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM user_roles");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    /**
+     * Test for importing users with roles. The password hashes must be kept as they are.
+     */
+    @Test
+    public void importUsers() throws IOException {
+        ImportReportDto report = importUsers(
+                user("first", "first@mail.com", null),
+                user("second", "second@mail.com", "USER"),
+                user("moder", "moder@mail.com", "MODERATOR"));
+
+        assertEquals(new ImportReportDto(3, 0, 0, List.of()), report);
+        UserLoginView moder = userRepository.findLoginViewByUsername("moder").orElseThrow();
+        assertEquals("moder@mail.com", moder.getEmail());
+        assertEquals(PASSWORD_HASH, moder.getPassword());
+        assertEquals(Role.MODERATOR, moder.getRole());
+        // The default role is not stored
+        assertNull(userRepository.findLoginViewByUsername("first").orElseThrow().getRole());
+        assertNull(userRepository.findLoginViewByUsername("second").orElseThrow().getRole());
+    }
+
+    /**
+     * Test for skipping lines that are not valid. Empty lines are not counted.
+     */
+    @Test
+    public void reportInvalidLines() throws IOException {
+        ImportReportDto report = importUsers(
+                "{not json",
+                "",
+                user("1st", "first@mail.com", null),
+                "{\"username\":\"second\",\"email\":\"second@mail.com\",\"password\":\"Password1\"}",
+                user("third", "third@mail.com", "ADMIN"),
+                user("fourth", "fourth", null),
+                user("fifth", "fifth@mail.com", null));
+
+        assertEquals(1, report.getImported());
+        assertEquals(5, report.getInvalid());
+        // Only the first problems are listed
+        List<ImportProblemDto> problems = report.getProblems();
+        assertEquals(3, problems.size());
+        assertEquals(1, problems.get(0).getLine());
+        assertEquals(ImportProblemType.INVALID, problems.get(0).getType());
+        assertEquals(3, problems.get(1).getLine());
+        assertEquals("Username does not meet the requirements!", problems.get(1).getMessage());
+        assertEquals(4, problems.get(2).getLine());
+        assertEquals("Password must be a BCrypt hash!", problems.get(2).getMessage());
+        assertTrue(userRepository.existsByUsername("fifth"));
+    }
+
+    /**
+     * Test for skipping users with a taken username or email: by an existing user, by an earlier line of the same
+     * batch and by a line of an earlier batch.
+     */
+    @Test
+    public void reportDuplicates() throws IOException {
+        userRepository.save(UserEntity.builder()
+                .username("existing").email("existing@mail.com").password(PASSWORD_HASH).build());
+
+        ImportReportDto report = importUsers(
+                user("existing", "new@mail.com", null),
+                user("first", "first@mail.com", null),
+                user("first", "other@mail.com", null),
+                user("second", "second@mail.com", null),
+                user("third", "first@mail.com", null));
+
+        assertEquals(2, report.getImported());
+        assertEquals(3, report.getDuplicates());
+        assertEquals(List.of(
+                new ImportProblemDto(1, ImportProblemType.DUPLICATE, "Username is already taken!"),
+                new ImportProblemDto(3, ImportProblemType.DUPLICATE, "Username is already taken!"),
+                new ImportProblemDto(5, ImportProblemType.DUPLICATE, "Email is already taken!")
+        ), report.getProblems());
+        assertFalse(userRepository.existsByEmail("new@mail.com"));
+        assertFalse(userRepository.existsByEmail("other@mail.com"));
+    }
+
+    /**
+     * Test that the imported users and the users saved by Hibernate get different IDs.
+     */
+    @Test
+    public void idsDontOverlapWithHibernate() throws IOException {
+        UserEntity before = userRepository.save(UserEntity.builder()
+                .username("before").email("before@mail.com").password(PASSWORD_HASH).build());
+        importUsers(user("first", "first@mail.com", null), user("second", "second@mail.com", null));
+        UserEntity after = userRepository.save(UserEntity.builder()
+                .username("after").email("after@mail.com").password(PASSWORD_HASH).build());
+
+        Set<Long> ids = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM users", Long.class));
+        assertEquals(4, ids.size());
+        assertTrue(ids.contains(before.getId()));
+        assertTrue(ids.contains(after.getId()));
+    }
+
+    private ImportReportDto importUsers(String... lines) throws IOException {
+        return userImportService.importUsers(new StringReader(String.join("\n", lines)));
+    }
+
+    private static String user(String username, String email, String role) {
+        String roleField = role == null ? "" : ",\"role\":\"%s\"".formatted(role);
+        return "{\"username\":\"%s\",\"email\":\"%s\",\"password\":\"%s\"%s}"
+                .formatted(username, email, PASSWORD_HASH, roleField);
+    }
+}
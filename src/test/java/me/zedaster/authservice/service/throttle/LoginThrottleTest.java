@@ -0,0 +1,54 @@
+package me.zedaster.authservice.service.throttle;
+
+import me.zedaster.authservice.exception.TooManyAttemptsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link LoginThrottle}
+ */
+public class LoginThrottleTest {
+    private final AtomicLong time = new AtomicLong();
+
+    private final LoginThrottle loginThrottle = new LoginThrottle(
+            new TokenBucketLimiter(2, Duration.ofSeconds(30), 100, time::get),
+            new TokenBucketLimiter(5, Duration.ofMillis(1500), 100, time::get));
+
+    /**
+     * Test for the attempts of the same account written differently. They must share the limit.
+     */
+    @Test
+    public void accountLimitIgnoresCase() {
+        loginThrottle.acquire("User", "10.0.0.1");
+        loginThrottle.acquire(" user ", "10.0.0.2");
+
+        TooManyAttemptsException ex = assertThrows(TooManyAttemptsException.class,
+                () -> loginThrottle.acquire("USER", "10.0.0.3"));
+        assertEquals("Too many login attempts, try again later!", ex.getMessage());
+        assertEquals(30, ex.getRetryAfterSeconds());
+        loginThrottle.acquire("other", "10.0.0.3");
+    }
+
+    /**
+     * Test for the attempts of different accounts from the same IP. They must be limited by the IP.
+     */
+    @Test
+    public void ipLimit() {
+        for (int i = 0; i < 5; i++) {
+            loginThrottle.acquire("user" + i, "10.0.0.1");
+        }
+
+        TooManyAttemptsException ex = assertThrows(TooManyAttemptsException.class,
+                () -> loginThrottle.acquire("user5", "10.0.0.1"));
+        // 1.5 seconds are rounded up
+        assertEquals(2, ex.getRetryAfterSeconds());
+
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        loginThrottle.acquire("user5", "10.0.0.1");
+    }
+}
@@ -0,0 +1,118 @@
+package me.zedaster.authservice.service.throttle;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link TokenBucketLimiter}
+ */
+public class TokenBucketLimiterTest {
+    /**
+     * Current time of the limiter in nanoseconds. It starts at a negative value like {@link System#nanoTime()} may.
+     */
+    private final AtomicLong time = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(3, Duration.ofSeconds(10), 100, time::get);
+
+    /**
+     * Test for taking all attempts at once. The next attempt must wait for one refill interval.
+     */
+    @Test
+    public void burst() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        assertEquals(TimeUnit.SECONDS.toNanos(10), limiter.tryAcquire("key"));
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertEquals(TimeUnit.SECONDS.toNanos(6), limiter.tryAcquire("key"));
+    }
+
+    /**
+     * Test for regaining attempts over time. Rejected attempts must not delay the next ones.
+     */
+    @Test
+    public void refill() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("key");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("key") > 0);
+        }
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertTrue(limiter.tryAcquire("key") > 0);
+
+        // After the capacity of refill intervals the bucket is full again
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        assertTrue(limiter.tryAcquire("key") > 0);
+    }
+
+    /**
+     * Test for the buckets of different keys. They must not share attempts.
+     */
+    @Test
+    public void separateKeys() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("first");
+        }
+        assertTrue(limiter.tryAcquire("first") > 0);
+        assertEquals(0, limiter.tryAcquire("second"));
+    }
+
+    /**
+     * Test for taking attempts of the same key from many threads. Exactly the capacity of attempts must be taken.
+     */
+    @Test
+    public void concurrentAttempts() throws Exception {
+        TokenBucketLimiter bigLimiter = new TokenBucketLimiter(1000, Duration.ofHours(1), 100, time::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    int acquired = 0;
+                    for (int j = 0; j < 500; j++) {
+                        if (bigLimiter.tryAcquire("key") == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                });
+            }
+            int acquired = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                acquired += future.get();
+            }
+            assertEquals(1000, acquired);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test for creating the limiter with incorrect limits.
+     */
+    @Test
+    public void incorrectLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TokenBucketLimiter(0, Duration.ofSeconds(1), 100, time::get));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TokenBucketLimiter(1, Duration.ZERO, 100, time::get));
+    }
+}
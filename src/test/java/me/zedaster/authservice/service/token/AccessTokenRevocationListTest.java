@@ -0,0 +1,154 @@
+package me.zedaster.authservice.service.token;
+
+import me.zedaster.authservice.entity.RevokedAccessTokenEntity;
+import me.zedaster.authservice.repository.RevokedAccessTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AccessTokenRevocationList}
+ */
+@SpringBootTest(classes = AccessTokenRevocationList.class,
+        properties = {"jwt.revocation.expected-size=100", "jwt.revocation.purge.batch-size=2"})
+public class AccessTokenRevocationListTest {
+    @Autowired
+    private AccessTokenRevocationList revocationList;
+
+    @MockBean
+    private RevokedAccessTokenRepository revokedAccessTokenRepository;
+
+    /**
+     * Test for revoking a token. It must be stored in the database and revoked at once.
+     */
+    @Test
+    public void revoke() {
+        String tokenId = UUID.randomUUID().toString();
+        assertFalse(revocationList.isRevoked(tokenId));
+
+        revocationList.revoke(tokenId, System.currentTimeMillis() + 60_000);
+
+        assertTrue(revocationList.isRevoked(tokenId));
+        assertFalse(revocationList.isRevoked(UUID.randomUUID().toString()));
+        assertFalse(revocationList.isRevoked(null));
+        verify(revokedAccessTokenRepository, times(1)).save(any(RevokedAccessTokenEntity.class));
+    }
+
+    /**
+     * Test for revoking the same token twice at the same time. The second insert violates the primary key, but the
+     * revocation must succeed.
+     */
+    @Test
+    public void revokeTwice() {
+        String tokenId = UUID.randomUUID().toString();
+        when(revokedAccessTokenRepository.save(any(RevokedAccessTokenEntity.class)))
+                .then(invocation -> invocation.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        revocationList.revoke(tokenId, System.currentTimeMillis() + 60_000);
+        revocationList.revoke(tokenId, System.currentTimeMillis() + 60_000);
+
+        assertTrue(revocationList.isRevoked(tokenId));
+        verify(revokedAccessTokenRepository, times(2)).save(any(RevokedAccessTokenEntity.class));
+    }
+
+    /**
+     * Test for syncing the revocations made by other instances. Only the revocations made since the last sync are
+     * loaded, and the ones of this instance are kept.
+     */
+    @Test
+    public void sync() {
+        UUID otherTokenId = UUID.randomUUID();
+        String ownTokenId = UUID.randomUUID().toString();
+        revocationList.revoke(ownTokenId, System.currentTimeMillis() + 60_000);
+        when(revokedAccessTokenRepository.findAllByRevokedAtAfter(any(Instant.class))).thenReturn(List.of(
+                new RevokedAccessTokenEntity(otherTokenId, Instant.now().plusSeconds(60), Instant.now())));
+
+        revocationList.sync();
+
+        assertTrue(revocationList.isRevoked(otherTokenId.toString()));
+        assertTrue(revocationList.isRevoked(ownTokenId));
+        verify(revokedAccessTokenRepository, never()).findAllByExpiresAtAfter(any(Instant.class));
+        verify(revokedAccessTokenRepository, never()).deleteExpiredBatch(any(Instant.class), anyInt());
+    }
+
+    /**
+     * Test for syncing after a revoked token expired. The revocation must be dropped.
+     */
+    @Test
+    public void syncDropsExpired() {
+        String tokenId = UUID.randomUUID().toString();
+        revocationList.revoke(tokenId, System.currentTimeMillis() - 1);
+
+        revocationList.sync();
+
+        assertFalse(revocationList.isRevoked(tokenId));
+    }
+
+    /**
+     * Test for syncing more revocations than the filter is sized for. All of them must stay revoked.
+     */
+    @Test
+    public void syncManyRevocations() {
+        List<String> tokenIds = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            String tokenId = UUID.randomUUID().toString();
+            revocationList.revoke(tokenId, System.currentTimeMillis() + 60_000);
+            tokenIds.add(tokenId);
+        }
+
+        revocationList.sync();
+
+        assertTrue(tokenIds.stream().allMatch(revocationList::isRevoked));
+    }
+
+    /**
+     * Test for syncing when the database is unavailable. The current revocations must be kept.
+     */
+    @Test
+    public void syncWithUnavailableDatabase() {
+        String tokenId = UUID.randomUUID().toString();
+        revocationList.revoke(tokenId, System.currentTimeMillis() + 60_000);
+        when(revokedAccessTokenRepository.findAllByRevokedAtAfter(any(Instant.class)))
+                .thenThrow(new IllegalStateException("The database is unavailable"));
+
+        revocationList.sync();
+
+        assertTrue(revocationList.isRevoked(tokenId));
+    }
+
+    /**
+     * Test for purging the revocations of expired tokens. They must be deleted in batches until a batch is not full.
+     */
+    @Test
+    public void purgeExpired() {
+        when(revokedAccessTokenRepository.deleteExpiredBatch(any(Instant.class), eq(2))).thenReturn(2, 2, 1);
+
+        assertEquals(5, revocationList.purgeExpired());
+
+        verify(revokedAccessTokenRepository, times(3)).deleteExpiredBatch(any(Instant.class), eq(2));
+    }
+
+    /**
+     * Test for revoking a token with an ID that is not a UUID.
+     */
+    @Test
+    public void revokeIncorrectId() {
+        assertThrows(IllegalArgumentException.class,
+                () -> revocationList.revoke("not-uuid", System.currentTimeMillis() + 60_000));
+        assertFalse(revocationList.isRevoked("not-uuid"));
+    }
+}
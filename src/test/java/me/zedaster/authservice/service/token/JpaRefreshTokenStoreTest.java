@@ -0,0 +1,127 @@
+package me.zedaster.authservice.service.token;
+
+import me.zedaster.authservice.entity.RefreshTokenEntity;
+import me.zedaster.authservice.repository.RefreshTokenRepository;
+import me.zedaster.authservice.repository.UsedLegacyRefreshTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link JpaRefreshTokenStore}
+ */
+@ActiveProfiles("test")
+@DataJpaTest(properties = "refresh-token.purge.batch-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaRefreshTokenStore.class)
+public class JpaRefreshTokenStoreTest {
+    @Autowired
+    private JpaRefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UsedLegacyRefreshTokenRepository usedLegacyRefreshTokenRepository;
+
+    /**
+     * Test for consuming a token. It can be consumed only once.
+     */
+    @Test
+    public void consumeOnce() {
+        UUID tokenId = UUID.randomUUID();
+        UUID familyId = UUID.randomUUID();
+        refreshTokenStore.save(tokenId, familyId, 1L, Instant.now().plus(Duration.ofDays(1)));
+
+        assertTrue(refreshTokenStore.consume(tokenId, familyId));
+        assertFalse(refreshTokenStore.consume(tokenId, familyId));
+    }
+
+    /**
+     * Test for consuming a used token. The other tokens of its family must be revoked, other families are kept.
+     */
+    @Test
+    public void consumeUsedTokenRevokesFamily() {
+        UUID familyId = UUID.randomUUID();
+        UUID usedTokenId = UUID.randomUUID();
+        UUID nextTokenId = UUID.randomUUID();
+        UUID otherTokenId = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(1));
+        refreshTokenStore.save(usedTokenId, familyId, 1L, expiresAt);
+        assertTrue(refreshTokenStore.consume(usedTokenId, familyId));
+        refreshTokenStore.save(nextTokenId, familyId, 1L, expiresAt);
+        refreshTokenStore.save(otherTokenId, UUID.randomUUID(), 1L, expiresAt);
+
+        assertFalse(refreshTokenStore.consume(usedTokenId, familyId));
+
+        assertFalse(refreshTokenRepository.existsById(nextTokenId));
+        assertTrue(refreshTokenRepository.existsById(otherTokenId));
+    }
+
+    /**
+     * Test for consuming a token issued before the rotation. It can be consumed only once.
+     */
+    @Test
+    public void consumeLegacyOnce() {
+        UUID tokenId = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(1));
+
+        assertTrue(refreshTokenStore.consumeLegacy(tokenId, expiresAt));
+        assertFalse(refreshTokenStore.consumeLegacy(tokenId, expiresAt));
+        assertTrue(refreshTokenStore.consumeLegacy(UUID.randomUUID(), expiresAt));
+    }
+
+    /**
+     * Test for revoking all tokens of a user. Tokens of other users are kept.
+     */
+    @Test
+    public void revokeAll() {
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(1));
+        UUID firstTokenId = UUID.randomUUID();
+        UUID secondTokenId = UUID.randomUUID();
+        UUID otherUserTokenId = UUID.randomUUID();
+        refreshTokenStore.save(firstTokenId, UUID.randomUUID(), 1L, expiresAt);
+        refreshTokenStore.save(secondTokenId, UUID.randomUUID(), 1L, expiresAt);
+        refreshTokenStore.save(otherUserTokenId, UUID.randomUUID(), 2L, expiresAt);
+
+        refreshTokenStore.revokeAll(1L);
+
+        assertFalse(refreshTokenStore.consume(firstTokenId, UUID.randomUUID()));
+        assertFalse(refreshTokenStore.consume(secondTokenId, UUID.randomUUID()));
+        assertTrue(refreshTokenStore.consume(otherUserTokenId, UUID.randomUUID()));
+    }
+
+    /**
+     * Test for purging expired tokens in several batches, including the used legacy tokens. Tokens that are not expired
+     * are kept.
+     */
+    @Test
+    public void purgeExpired() {
+        Instant expired = Instant.now().minus(Duration.ofMinutes(1));
+        for (int i = 0; i < 5; i++) {
+            refreshTokenStore.save(UUID.randomUUID(), UUID.randomUUID(), 1L, expired);
+        }
+        UUID liveTokenId = UUID.randomUUID();
+        refreshTokenStore.save(liveTokenId, UUID.randomUUID(), 1L, Instant.now().plus(Duration.ofDays(1)));
+
+        UUID liveLegacyTokenId = UUID.randomUUID();
+        refreshTokenStore.consumeLegacy(UUID.randomUUID(), expired);
+        refreshTokenStore.consumeLegacy(liveLegacyTokenId, Instant.now().plus(Duration.ofDays(1)));
+
+        assertEquals(6, refreshTokenStore.purgeExpired());
+
+        assertEquals(1, refreshTokenRepository.count());
+        assertTrue(refreshTokenRepository.existsById(liveTokenId));
+        assertEquals(1, usedLegacyRefreshTokenRepository.count());
+        assertTrue(usedLegacyRefreshTokenRepository.existsById(liveLegacyTokenId));
+    }
+}
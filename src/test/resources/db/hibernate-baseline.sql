@@ -0,0 +1,7 @@
+-- Schema created by Hibernate (ddl-auto: update) for the entities of the first release, as it was logged
+create table user_roles (user_id bigint not null, role integer not null, primary key (user_id));
+create table users (id bigint not null, email varchar(255), password varchar(255), username varchar(255), primary key (id));
+alter table if exists users add constraint UK6dotkott2kjsp8vw4d0m25fb7 unique (email);
+alter table if exists users add constraint UKr43af9ap4edm43mmtq01oddj6 unique (username);
+create sequence users_SEQ start with 1 increment by 50;
+alter table if exists user_roles add constraint FKhfh9dx7w3ubf1co1vdev94g3f foreign key (user_id) references users;